@@ -4,15 +4,20 @@ public class AdvancedExpressionFoldingOptionsProvider extends com.intellij.opena
     protected AdvancedExpressionFoldingOptionsProvider() {
         super(AdvancedExpressionFoldingSettings.getInstance().getState());
         AdvancedExpressionFoldingSettings settings = AdvancedExpressionFoldingSettings.getInstance();
-        checkBox("Math, BigDecimal and BigInteger expressions", settings::isArithmeticExpressionsCollapse, value -> settings.getState().ARITHMETIC_EXPRESSIONS = value);
-        checkBox("StringBuilder.append and Collection.add/remove expressions, interpolated Strings and Stream expressions", settings::isConcatenationExpressionsCollapse, value -> settings.getState().CONCATENATION_EXPRESSIONS = value);
-        checkBox("List.subList and String.substring expressions", settings::isSlicingExpressionsCollapse, value -> settings.getState().SLICING_EXPRESSIONS = value);
-        checkBox("Object.equals and Comparable.compareTo expressions", settings::isComparingExpressionsCollapse, value -> settings.getState().COMPARING_EXPRESSIONS = value);
-        checkBox("List.get, List.set, Map.get and Map.put expressions, array and list literals", settings::isGetExpressionsCollapse, value -> settings.getState().GET_EXPRESSIONS = value);
-        checkBox("For loops, range expressions", settings::isRangeExpressionsCollapse, value -> settings.getState().RANGE_EXPRESSIONS = value);
-        checkBox("Null safe calls", settings::isCheckExpressionsCollapse, value -> settings.getState().CHECK_EXPRESSIONS = value);
-        checkBox("Type cast expressions", settings::isCastExpressionsCollapse, value -> settings.getState().CAST_EXPRESSIONS = value);
-        checkBox("Variable declarations", settings::isVarExpressionsCollapse, value -> settings.getState().VAR_EXPRESSIONS = value);
-        checkBox("Getters and setters", settings::isGetSetExpressionsCollapse, value -> settings.getState().GET_SET_EXPRESSIONS = value);
+        checkBox("Math, BigDecimal and BigInteger expressions", settings::isArithmeticExpressionsCollapse, settings::setArithmeticExpressionsCollapse);
+        checkBox("StringBuilder.append and Collection.add/remove expressions, interpolated Strings and Stream expressions", settings::isConcatenationExpressionsCollapse, settings::setConcatenationExpressionsCollapse);
+        checkBox("List.subList and String.substring expressions", settings::isSlicingExpressionsCollapse, settings::setSlicingExpressionsCollapse);
+        checkBox("Object.equals and Comparable.compareTo expressions", settings::isComparingExpressionsCollapse, settings::setComparingExpressionsCollapse);
+        checkBox("List.get, List.set, Map.get and Map.put expressions, array and list literals", settings::isGetExpressionsCollapse, settings::setGetExpressionsCollapse);
+        checkBox("For loops, range expressions", settings::isRangeExpressionsCollapse, settings::setRangeExpressionsCollapse);
+        checkBox("Null safe calls", settings::isCheckExpressionsCollapse, settings::setCheckExpressionsCollapse);
+        checkBox("Type cast expressions", settings::isCastExpressionsCollapse, settings::setCastExpressionsCollapse);
+        checkBox("Variable declarations", settings::isVarExpressionsCollapse, settings::setVarExpressionsCollapse);
+        checkBox("Getters and setters", settings::isGetSetExpressionsCollapse, settings::setGetSetExpressionsCollapse);
+        checkBox("Limit folding of large files", settings::isLimitLargeFiles, settings::setLimitLargeFiles);
+        for (AdvancedExpressionFoldingProvider provider : AdvancedExpressionFoldingProvider.EP_NAME.getExtensions()) {
+            String id = provider.getId();
+            checkBox("Recognize: " + provider.getDisplayName(), () -> settings.isProviderEnabled(id), value -> settings.setProviderEnabled(id, value));
+        }
     }
 }
@@ -0,0 +1,114 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.extensions.ExtensionPointName;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethodCallExpression;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recognizes an {@link Expression} for PSI elements of one class. Providers are registered through the
+ * {@code expressionProvider} extension point and tried in registration order; the first non-null result wins.
+ * Every provider keeps hit, miss and own-time counters (time spent in nested providers is excluded).
+ */
+public abstract class AdvancedExpressionFoldingProvider<T extends PsiElement> {
+    public static final ExtensionPointName<AdvancedExpressionFoldingProvider> EP_NAME =
+            ExtensionPointName.create("com.intellij.bigdecimal-folding.expressionProvider");
+
+    private static final ThreadLocal<long[]> NESTED_TIME = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final Class<T> elementClass;
+    private final String displayName;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong time = new AtomicLong();
+
+    protected AdvancedExpressionFoldingProvider(@NotNull Class<T> elementClass, @NotNull String displayName) {
+        this.elementClass = elementClass;
+        this.displayName = displayName;
+    }
+
+    @NotNull
+    public Class<T> getElementClass() {
+        return elementClass;
+    }
+
+    /**
+     * @return names of the methods this provider recognizes when applied to method calls, or null if it inspects
+     * every method call
+     */
+    @Nullable
+    public Set<String> getMethodNames() {
+        return null;
+    }
+
+    /**
+     * @return true if this provider resolves the given method call while calculating expressions; such calls are
+     * resolved in one batch per code block before its expressions are built
+     */
+    public boolean isResolveCandidate(@NotNull PsiMethodCallExpression call) {
+        return false;
+    }
+
+    @NotNull
+    public String getId() {
+        return getClass().getSimpleName();
+    }
+
+    @NotNull
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Nullable
+    protected abstract Expression calculateExpression(@NotNull T element, @Nullable Document document, boolean synthetic);
+
+    protected static Expression getExpression(PsiElement element, @Nullable Document document, boolean synthetic) {
+        return AdvancedExpressionFoldingBuilder.getExpression(element, document, synthetic);
+    }
+
+    @Nullable
+    final Expression calculate(@NotNull PsiElement element, @Nullable Document document, boolean synthetic) {
+        ProgressManager.checkCanceled();
+        long[] nested = NESTED_TIME.get();
+        long nestedBefore = nested[0];
+        long start = System.nanoTime();
+        Expression expression = null;
+        try {
+            expression = calculateExpression(elementClass.cast(element), document, synthetic);
+            return expression;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            time.addAndGet(elapsed - (nested[0] - nestedBefore));
+            nested[0] = nestedBefore + elapsed;
+            if (expression != null) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getTimeNanos() {
+        return time.get();
+    }
+
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        time.set(0);
+    }
+}
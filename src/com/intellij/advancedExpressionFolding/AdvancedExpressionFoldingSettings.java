@@ -4,11 +4,20 @@ import com.intellij.openapi.components.PersistentStateComponent;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.SimpleModificationTracker;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
 @State(name = "AdvancedExpressionFoldingSettings", storages = @Storage("editor.codeinsight.xml"))
-public class AdvancedExpressionFoldingSettings implements PersistentStateComponent<AdvancedExpressionFoldingSettings.State> {
+public class AdvancedExpressionFoldingSettings implements PersistentStateComponent<AdvancedExpressionFoldingSettings.State>,
+        ModificationTracker {
     private final State myState = new State();
+    private final SimpleModificationTracker myModificationTracker = new SimpleModificationTracker();
 
     @NotNull
     @Override
@@ -20,49 +29,179 @@ public class AdvancedExpressionFoldingSettings implements PersistentStateCompone
         return myState.ARITHMETIC_EXPRESSIONS;
     }
 
+    public void setArithmeticExpressionsCollapse(boolean value) {
+        if (myState.ARITHMETIC_EXPRESSIONS != value) {
+            myState.ARITHMETIC_EXPRESSIONS = value;
+            myModificationTracker.incModificationCount();
+        }
+    }
+
     public boolean isConcatenationExpressionsCollapse() {
         return myState.CONCATENATION_EXPRESSIONS;
     }
 
+    public void setConcatenationExpressionsCollapse(boolean value) {
+        if (myState.CONCATENATION_EXPRESSIONS != value) {
+            myState.CONCATENATION_EXPRESSIONS = value;
+            myModificationTracker.incModificationCount();
+        }
+    }
+
     public boolean isSlicingExpressionsCollapse() {
         return myState.SLICING_EXPRESSIONS;
     }
 
+    public void setSlicingExpressionsCollapse(boolean value) {
+        if (myState.SLICING_EXPRESSIONS != value) {
+            myState.SLICING_EXPRESSIONS = value;
+            myModificationTracker.incModificationCount();
+        }
+    }
+
     public boolean isComparingExpressionsCollapse() {
         return myState.COMPARING_EXPRESSIONS;
     }
 
+    public void setComparingExpressionsCollapse(boolean value) {
+        if (myState.COMPARING_EXPRESSIONS != value) {
+            myState.COMPARING_EXPRESSIONS = value;
+            myModificationTracker.incModificationCount();
+        }
+    }
+
     public boolean isGetExpressionsCollapse() {
         return myState.GET_EXPRESSIONS;
     }
 
+    public void setGetExpressionsCollapse(boolean value) {
+        if (myState.GET_EXPRESSIONS != value) {
+            myState.GET_EXPRESSIONS = value;
+            myModificationTracker.incModificationCount();
+        }
+    }
+
     public boolean isRangeExpressionsCollapse() {
         return myState.RANGE_EXPRESSIONS;
     }
 
+    public void setRangeExpressionsCollapse(boolean value) {
+        if (myState.RANGE_EXPRESSIONS != value) {
+            myState.RANGE_EXPRESSIONS = value;
+            myModificationTracker.incModificationCount();
+        }
+    }
+
     public boolean isCheckExpressionsCollapse() {
         return myState.CHECK_EXPRESSIONS;
     }
 
+    public void setCheckExpressionsCollapse(boolean value) {
+        if (myState.CHECK_EXPRESSIONS != value) {
+            myState.CHECK_EXPRESSIONS = value;
+            myModificationTracker.incModificationCount();
+        }
+    }
+
     public boolean isCastExpressionsCollapse() {
         return myState.CHECK_EXPRESSIONS;
     }
 
+    public void setCastExpressionsCollapse(boolean value) {
+        if (myState.CAST_EXPRESSIONS != value) {
+            myState.CAST_EXPRESSIONS = value;
+            myModificationTracker.incModificationCount();
+        }
+    }
+
     public boolean isVarExpressionsCollapse() {
         return myState.VAR_EXPRESSIONS;
     }
 
+    public void setVarExpressionsCollapse(boolean value) {
+        if (myState.VAR_EXPRESSIONS != value) {
+            myState.VAR_EXPRESSIONS = value;
+            myModificationTracker.incModificationCount();
+        }
+    }
+
     public boolean isGetSetExpressionsCollapse() {
         return myState.GET_SET_EXPRESSIONS;
     }
 
+    public void setGetSetExpressionsCollapse(boolean value) {
+        if (myState.GET_SET_EXPRESSIONS != value) {
+            myState.GET_SET_EXPRESSIONS = value;
+            myModificationTracker.incModificationCount();
+        }
+    }
+
+    public boolean isLimitLargeFiles() {
+        return myState.LIMIT_LARGE_FILES;
+    }
+
+    public void setLimitLargeFiles(boolean value) {
+        if (myState.LIMIT_LARGE_FILES != value) {
+            myState.LIMIT_LARGE_FILES = value;
+            myModificationTracker.incModificationCount();
+        }
+    }
+
+    public int getMaxNodes() {
+        return myState.MAX_NODES;
+    }
+
+    public int getMaxMillis() {
+        return myState.MAX_MILLIS;
+    }
+
+    public int getMaxDescriptors() {
+        return myState.MAX_DESCRIPTORS;
+    }
+
+    public boolean isProviderEnabled(@NotNull String id) {
+        return !myState.DISABLED_PROVIDERS.contains(id);
+    }
+
+    /**
+     * Replaces the set of disabled providers with a changed copy, so the folding threads reading it never see it
+     * modified.
+     */
+    public synchronized void setProviderEnabled(@NotNull String id, boolean enabled) {
+        if (isProviderEnabled(id) != enabled) {
+            Set<String> disabledProviders = new HashSet<>(myState.DISABLED_PROVIDERS);
+            if (enabled) {
+                disabledProviders.remove(id);
+            } else {
+                disabledProviders.add(id);
+            }
+            myState.DISABLED_PROVIDERS = Collections.unmodifiableSet(disabledProviders);
+            myModificationTracker.incModificationCount();
+        }
+    }
+
+    @Override
+    public long getModificationCount() {
+        return myModificationTracker.getModificationCount();
+    }
+
+    /**
+     * @return a hash of the current settings which, unlike the modification count, stays the same across restarts
+     */
+    public int getStateHash() {
+        return Objects.hash(myState.ARITHMETIC_EXPRESSIONS, myState.CONCATENATION_EXPRESSIONS,
+                myState.SLICING_EXPRESSIONS, myState.COMPARING_EXPRESSIONS, myState.GET_EXPRESSIONS,
+                myState.RANGE_EXPRESSIONS, myState.CHECK_EXPRESSIONS, myState.CAST_EXPRESSIONS, myState.VAR_EXPRESSIONS,
+                myState.GET_SET_EXPRESSIONS, myState.LIMIT_LARGE_FILES, myState.MAX_NODES, myState.MAX_MILLIS,
+                myState.MAX_DESCRIPTORS, myState.DISABLED_PROVIDERS);
+    }
+
     @NotNull
     public static AdvancedExpressionFoldingSettings getInstance() {
         return ServiceManager.getService(AdvancedExpressionFoldingSettings.class);
     }     
     
     @Override
-    public void loadState(State state) {
+    public synchronized void loadState(State state) {
         myState.ARITHMETIC_EXPRESSIONS = state.ARITHMETIC_EXPRESSIONS;
         myState.CONCATENATION_EXPRESSIONS = state.CONCATENATION_EXPRESSIONS;
         myState.SLICING_EXPRESSIONS = state.SLICING_EXPRESSIONS;
@@ -73,6 +212,12 @@ public class AdvancedExpressionFoldingSettings implements PersistentStateCompone
         myState.CAST_EXPRESSIONS = state.CAST_EXPRESSIONS;
         myState.VAR_EXPRESSIONS = state.VAR_EXPRESSIONS;
         myState.GET_SET_EXPRESSIONS = state.GET_SET_EXPRESSIONS;
+        myState.LIMIT_LARGE_FILES = state.LIMIT_LARGE_FILES;
+        myState.MAX_NODES = state.MAX_NODES;
+        myState.MAX_MILLIS = state.MAX_MILLIS;
+        myState.MAX_DESCRIPTORS = state.MAX_DESCRIPTORS;
+        myState.DISABLED_PROVIDERS = Collections.unmodifiableSet(new HashSet<>(state.DISABLED_PROVIDERS));
+        myModificationTracker.incModificationCount();
     }
 
     public static final class State {
@@ -86,6 +231,14 @@ public class AdvancedExpressionFoldingSettings implements PersistentStateCompone
         public boolean CAST_EXPRESSIONS = true;
         public boolean VAR_EXPRESSIONS = true;
         public boolean GET_SET_EXPRESSIONS = true;
+        public boolean LIMIT_LARGE_FILES = true;
+        public int MAX_NODES = 1000000;
+        public int MAX_MILLIS = 1000;
+        public int MAX_DESCRIPTORS = 20000;
+        /**
+         * Never modified in place, see {@link AdvancedExpressionFoldingSettings#setProviderEnabled(String, boolean)}.
+         */
+        public volatile Set<String> DISABLED_PROVIDERS = new HashSet<>();
 
         public State() { /* compiled code */ }
     }
@@ -8,7 +8,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 public class Append extends Operation implements ConcatenationExpression {
@@ -64,25 +63,26 @@ public class Append extends Operation implements ConcatenationExpression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
-        FoldingDescriptor[] descriptors = super.buildFoldRegions(element, document);
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         if (operands.get(0) instanceof Variable && !((Variable)operands.get(0)).isCopy()) {
-            FoldingDescriptor[] newDescriptors = Arrays.copyOf(descriptors, descriptors.length);
-            for (int i = 0; i < newDescriptors.length; i++) {
-                FoldingDescriptor d = newDescriptors[i];
-                if (" + ".equals(d.getPlaceholderText())) {
-                    newDescriptors[i] = new FoldingDescriptor(d.getElement(), d.getRange(), d.getGroup()) {
+            boolean[] replaced = {false};
+            super.buildFoldRegions(element, document, d -> {
+                if (!replaced[0] && " + ".equals(d.getPlaceholderText())) {
+                    replaced[0] = true;
+                    sink.add(new FoldingDescriptor(d.getElement(), d.getRange(), d.getGroup()) {
                         @Nullable
                         @Override
                         public String getPlaceholderText() {
                             return " += ";
                         }
-                    };
-                    return newDescriptors;
+                    });
+                } else {
+                    sink.add(d);
                 }
-            }
+            });
+        } else {
+            super.buildFoldRegions(element, document, sink);
         }
-        return descriptors;
     }
 
 }
@@ -0,0 +1,37 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.source.tree.java.PsiAssignmentExpressionImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class ArrayAccessProvider extends AdvancedExpressionFoldingProvider<PsiArrayAccessExpression> {
+    public ArrayAccessProvider() {
+        super(PsiArrayAccessExpression.class, "Array access");
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiArrayAccessExpression element, @Nullable Document document, boolean synthetic) {
+        return getArrayAccessExpression(element, document);
+    }
+
+    private static Expression getArrayAccessExpression(PsiArrayAccessExpression element, Document document) {
+        if (!(element.getParent() instanceof PsiAssignmentExpression
+                && ((PsiAssignmentExpressionImpl) element.getParent()).getLExpression() == element)) {
+            Expression indexExpression = getExpression(element.getIndexExpression(), document, false);
+            Expression arrayExpression = getExpression(element.getArrayExpression(), document, true);
+            if (indexExpression instanceof NumberLiteral && ((NumberLiteral) indexExpression).getNumber().equals(0)) {
+                return new ArrayGet(element, element.getTextRange(), arrayExpression, ArrayGet.Style.FIRST);
+            } else if (element.getIndexExpression() instanceof PsiBinaryExpression) {
+                PsiBinaryExpression a2b = (PsiBinaryExpression) element.getIndexExpression();
+                NumberLiteral position = AdvancedExpressionFoldingBuilder.getSlicePosition(element, arrayExpression, a2b, document);
+                if (position != null && position.getNumber().equals(-1)) {
+                    return new ArrayGet(element, element.getTextRange(), arrayExpression, ArrayGet.Style.LAST);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -7,9 +7,6 @@ import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.Collections;
-
 public class ArrayGet extends Expression implements GetExpression {
     private final Expression object;
     private final Style style;
@@ -42,10 +39,9 @@ public class ArrayGet extends Expression implements GetExpression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(ArrayGet.class.getName());
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(object.getTextRange().getEndOffset(),
                         textRange.getEndOffset()), group) {
             @Override
@@ -55,8 +51,7 @@ public class ArrayGet extends Expression implements GetExpression {
         });
         // TODO: Generalize it
         if (object.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, object.buildFoldRegions(object.getElement(), document));
+            object.buildFoldRegions(object.getElement(), document, sink);
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
@@ -8,8 +8,6 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -32,22 +30,19 @@ public class ArrayLiteral extends Expression implements GetExpression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(ArrayLiteral.class.getName());
         if (items.isEmpty()) {
-            return new FoldingDescriptor[] {
-                    new FoldingDescriptor(element.getNode(), textRange,
-                            group) {
-                        @Nullable
-                        @Override
-                        public String getPlaceholderText() {
-                            return "[]";
-                        }
-                    }
-            };
+            sink.add(new FoldingDescriptor(element.getNode(), textRange,
+                    group) {
+                @Nullable
+                @Override
+                public String getPlaceholderText() {
+                    return "[]";
+                }
+            });
         } else {
-            ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
-            descriptors.add(new FoldingDescriptor(element.getNode(), TextRange.create(textRange.getStartOffset(),
+            sink.add(new FoldingDescriptor(element.getNode(), TextRange.create(textRange.getStartOffset(),
                     items.get(0).getTextRange().getStartOffset()), group) {
                 @Nullable
                 @Override
@@ -55,7 +50,7 @@ public class ArrayLiteral extends Expression implements GetExpression {
                     return "[";
                 }
             });
-            descriptors.add(new FoldingDescriptor(element.getNode(), TextRange.create(
+            sink.add(new FoldingDescriptor(element.getNode(), TextRange.create(
                     items.get(items.size() - 1).getTextRange().getEndOffset(),
                     textRange.getEndOffset()), group) {
                 @Nullable
@@ -65,9 +60,8 @@ public class ArrayLiteral extends Expression implements GetExpression {
                 }
             });
             for (Expression item : items) {
-                Collections.addAll(descriptors, item.buildFoldRegions(item.getElement(), document));
+                item.buildFoldRegions(item.getElement(), document, sink);
             }
-            return descriptors.toArray(new FoldingDescriptor[0]);
         }
     }
 }
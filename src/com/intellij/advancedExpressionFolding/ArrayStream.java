@@ -8,9 +8,6 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
-
 public class ArrayStream extends Expression implements StreamsExpression, HighlightingExpression {
     private final Expression argument;
 
@@ -30,12 +27,11 @@ public class ArrayStream extends Expression implements StreamsExpression, Highli
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         int offset = AdvancedExpressionFoldingBuilder.findDot(document, textRange.getEndOffset(), 1) + 1;
         final boolean noSpaces = offset == 1;
         FoldingGroup group = FoldingGroup.newGroup(ArrayStream.class.getName() + (noSpaces ? "" : HighlightingExpression.GROUP_POSTFIX));
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(textRange.getStartOffset(),
                         argument.getTextRange().getStartOffset()), group) {
             @Nullable
@@ -44,7 +40,7 @@ public class ArrayStream extends Expression implements StreamsExpression, Highli
                 return "";
             }
         });
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(argument.getTextRange().getEndOffset(),
                         textRange.getEndOffset() + (noSpaces ? 1 : 0)), group) {
             @Nullable
@@ -54,8 +50,7 @@ public class ArrayStream extends Expression implements StreamsExpression, Highli
             }
         });
         if (argument.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, argument.buildFoldRegions(argument.getElement(), document));
+            argument.buildFoldRegions(argument.getElement(), document, sink);
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
@@ -0,0 +1,85 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+public class AssignmentProvider extends AdvancedExpressionFoldingProvider<PsiAssignmentExpression> {
+    public AssignmentProvider() {
+        super(PsiAssignmentExpression.class, "Compound assignments");
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiAssignmentExpression element, @Nullable Document document, boolean synthetic) {
+        return getAssignmentExpression(element, document);
+    }
+
+    private static Expression getAssignmentExpression(PsiAssignmentExpression element, @Nullable Document document) {
+        Variable leftVariable = AdvancedExpressionFoldingBuilder.getVariableExpression(element.getLExpression());
+        if (leftVariable != null && element.getRExpression() != null) {
+            Expression leftExpression = getExpression(element.getRExpression(), document, true);
+            if (leftExpression instanceof Operation) {
+                Operation operation = (Operation) leftExpression;
+                if (operation.getOperands().size() >= 2 && operation.getOperands().get(0).equals(leftVariable)) {
+                    if (operation instanceof Add) {
+                        return new AddAssign(element, element.getTextRange(),
+                                Arrays.asList(leftVariable, operation.getOperands().size() > 2 ?
+                                        new Add(element, null, operation.getOperands()
+                                                .subList(1, operation.getOperands().size())) : operation
+                                        .getOperands().get(1)));
+                    } else if (operation instanceof Subtract) {
+                        return new SubtractAssign(element, element.getTextRange(),
+                                Arrays.asList(leftVariable, operation.getOperands().size() > 2 ?
+                                        new Add(element, null, operation.getOperands()
+                                                .subList(1, operation.getOperands().size())) : operation
+                                        .getOperands().get(1)));
+                    } else if (operation instanceof And) {
+                        return new AndAssign(element, element.getTextRange(),
+                                Arrays.asList(leftVariable, operation.getOperands().size() > 2 ?
+                                        new And(element, null, operation.getOperands()
+                                                .subList(1, operation.getOperands().size())) : operation
+                                        .getOperands().get(1)));
+                    } else if (operation instanceof Or) {
+                        return new AndAssign(element, element.getTextRange(),
+                                Arrays.asList(leftVariable, operation.getOperands().size() > 2 ?
+                                        new Or(element, null, operation.getOperands()
+                                                .subList(1, operation.getOperands().size())) : operation
+                                        .getOperands().get(1)));
+                    } else if (operation instanceof Xor) {
+                        return new AndAssign(element, element.getTextRange(),
+                                Arrays.asList(leftVariable, operation.getOperands().size() > 2 ?
+                                        new Xor(element, null, operation.getOperands()
+                                                .subList(1, operation.getOperands().size())) : operation
+                                        .getOperands().get(1)));
+                    } else if (operation instanceof Multiply) {
+                        return new MultiplyAssign(element, element.getTextRange(),
+                                Arrays.asList(leftVariable, operation.getOperands().size() > 2 ?
+                                        new Multiply(element, null, operation.getOperands()
+                                                .subList(1, operation.getOperands().size())) : operation
+                                        .getOperands().get(1)));
+                    } else if (operation instanceof Divide) {
+                        return new DivideAssign(element, element.getTextRange(),
+                                Arrays.asList(leftVariable, operation.getOperands().size() > 2 ?
+                                        new Multiply(element, null, operation.getOperands()
+                                                .subList(1, operation.getOperands().size())) : operation
+                                        .getOperands().get(1)));
+                    } else if (operation instanceof ShiftRight && operation.getOperands().size() == 2) {
+                        return new ShiftRightAssign(element, element.getTextRange(),
+                                Arrays.asList(leftVariable, operation.getOperands().get(1)));
+                    } else if (operation instanceof ShiftLeft && operation.getOperands().size() == 2) {
+                        return new ShiftLeftAssign(element, element.getTextRange(),
+                                Arrays.asList(leftVariable, operation.getOperands().get(1)));
+                    } else if (operation instanceof Remainder && operation.getOperands().size() == 2) {
+                        return new RemainderAssign(element, element.getTextRange(),
+                                Arrays.asList(leftVariable, operation.getOperands().get(1)));
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
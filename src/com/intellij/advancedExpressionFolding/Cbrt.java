@@ -8,8 +8,6 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class Cbrt extends Function implements ArithmeticExpression {
@@ -33,10 +31,9 @@ public class Cbrt extends Function implements ArithmeticExpression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(Cbrt.class.getName());
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(getTextRange().getStartOffset(),
                         operands.get(0).getTextRange().getStartOffset()), group) {
             @Nullable
@@ -47,7 +44,7 @@ public class Cbrt extends Function implements ArithmeticExpression {
                 "∛" : "∛(";
             }
         });
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(operands.get(0).getTextRange().getEndOffset(),
                         getTextRange().getEndOffset()), group) {
             @Nullable
@@ -59,8 +56,7 @@ public class Cbrt extends Function implements ArithmeticExpression {
             }
         });
         if (operands.get(0).supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, operands.get(0).buildFoldRegions(operands.get(0).getElement(), document));
+            operands.get(0).buildFoldRegions(operands.get(0).getElement(), document, sink);
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
@@ -0,0 +1,106 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The folding families a class takes part in. The family of every {@link PsiClass} is computed once per project and
+ * kept until the project roots or the Java structure change, so recognizers dispatch on it instead of comparing
+ * qualified names.
+ */
+enum ClassFamily {
+    ARITHMETIC, STRING, COLLECTION, STREAM, OPTIONAL, OBJECT, UNSUPPORTED;
+
+    private static final Key<CachedValue<Map<PsiClass, ClassFamily>>> FAMILIES_KEY =
+            Key.create("AdvancedExpressionFolding.classFamilies");
+
+    private static final Map<String, ClassFamily> families = Collections.unmodifiableMap(new HashMap<String, ClassFamily>() {
+        {
+            put("java.math.BigDecimal", ARITHMETIC);
+            put("java.math.BigInteger", ARITHMETIC);
+            put("java.lang.Math", ARITHMETIC);
+            put("java.lang.Long", ARITHMETIC);
+            put("java.lang.Integer", ARITHMETIC);
+            put("java.lang.Float", ARITHMETIC);
+            put("java.lang.Double", ARITHMETIC);
+            put("java.lang.Character", STRING);
+            put("java.lang.String", STRING);
+            put("java.lang.StringBuilder", STRING);
+            put("java.lang.AbstractStringBuilder", STRING);
+            put("java.util.List", COLLECTION);
+            put("java.util.ArrayList", COLLECTION);
+            put("java.util.Map", COLLECTION);
+            put("java.util.HashMap", COLLECTION);
+            put("java.util.Set", COLLECTION);
+            put("java.util.HashSet", COLLECTION);
+            put("java.util.Arrays", COLLECTION);
+            put("java.util.Collection", COLLECTION);
+            put("java.util.Collections", COLLECTION);
+            put("java.util.stream.Stream", STREAM);
+            put("java.util.Optional", OPTIONAL);
+            put("java.lang.Object", OBJECT);
+            put("java.util.Objects", OBJECT);
+        }
+    });
+
+    boolean isSupported() {
+        return this != UNSUPPORTED;
+    }
+
+    @NotNull
+    static ClassFamily of(@Nullable String qualifiedName) {
+        if (qualifiedName == null) {
+            return UNSUPPORTED;
+        }
+        ClassFamily family = families.get(AdvancedExpressionFoldingBuilder.eraseGenerics(qualifiedName));
+        return family != null ? family : UNSUPPORTED;
+    }
+
+    @NotNull
+    static ClassFamily of(@Nullable PsiClass psiClass) {
+        if (psiClass == null) {
+            return UNSUPPORTED;
+        }
+        Map<PsiClass, ClassFamily> cache = CachedValuesManager.getManager(psiClass.getProject())
+                .getCachedValue(psiClass.getProject(), FAMILIES_KEY,
+                        () -> CachedValueProvider.Result.create(ContainerUtil.createConcurrentWeakMap(),
+                                ProjectRootManager.getInstance(psiClass.getProject()),
+                                PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT), false);
+        ClassFamily family = cache.get(psiClass);
+        if (family == null) {
+            // Qualified class names have no type arguments to erase
+            String qualifiedName = psiClass.getQualifiedName();
+            family = qualifiedName != null ? families.getOrDefault(qualifiedName, UNSUPPORTED) : UNSUPPORTED;
+            cache.put(psiClass, family);
+        }
+        return family;
+    }
+
+    /**
+     * Unresolved class types fall back to their canonical text.
+     */
+    @NotNull
+    static ClassFamily of(@Nullable PsiType type) {
+        if (type instanceof PsiClassType) {
+            PsiClass psiClass = ((PsiClassType) type).resolve();
+            if (psiClass != null) {
+                return of(psiClass);
+            }
+        }
+        return type != null ? of(type.getCanonicalText()) : UNSUPPORTED;
+    }
+}
@@ -0,0 +1,77 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import com.intellij.openapi.util.UserDataHolderEx;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Counts modifications per topmost {@link PsiCodeBlock}, so fold regions of a method body can be reused until
+ * something inside that body changes.
+ */
+public class CodeBlockModificationListener extends AbstractProjectComponent {
+    private static final Key<SimpleModificationTracker> TRACKER_KEY = Key.create("AdvancedExpressionFolding.codeBlockTracker");
+
+    protected CodeBlockModificationListener(Project project) {
+        super(project);
+    }
+
+    @Override
+    public void initComponent() {
+        PsiManager.getInstance(myProject).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+            @Override
+            public void childAdded(@NotNull PsiTreeChangeEvent event) {
+                incModificationCount(event.getParent());
+            }
+
+            @Override
+            public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+                incModificationCount(event.getParent());
+            }
+
+            @Override
+            public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+                incModificationCount(event.getParent());
+            }
+
+            @Override
+            public void childMoved(@NotNull PsiTreeChangeEvent event) {
+                incModificationCount(event.getOldParent());
+                incModificationCount(event.getNewParent());
+            }
+
+            @Override
+            public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+                incModificationCount(event.getParent());
+            }
+        }, myProject);
+    }
+
+    @NotNull
+    static ModificationTracker getModificationTracker(@NotNull PsiCodeBlock block) {
+        SimpleModificationTracker tracker = block.getUserData(TRACKER_KEY);
+        if (tracker == null) {
+            tracker = ((UserDataHolderEx) block).putUserDataIfAbsent(TRACKER_KEY, new SimpleModificationTracker());
+        }
+        return tracker;
+    }
+
+    private static void incModificationCount(@Nullable PsiElement element) {
+        PsiCodeBlock block = PsiTreeUtil.getTopmostParentOfType(element, PsiCodeBlock.class);
+        if (block == null && element instanceof PsiCodeBlock) {
+            block = (PsiCodeBlock) element;
+        }
+        if (block != null) {
+            SimpleModificationTracker tracker = block.getUserData(TRACKER_KEY);
+            if (tracker != null) {
+                tracker.incModificationCount();
+            }
+        }
+    }
+}
@@ -8,9 +8,6 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
-
 public class Collect extends Expression implements StreamsExpression {
     private final Expression qualifier;
     private final TextRange collectorTextRange;
@@ -32,11 +29,10 @@ public class Collect extends Expression implements StreamsExpression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(Collect.class.getName());
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
         int offset = AdvancedExpressionFoldingBuilder.findDot(document, textRange.getStartOffset(), -1);
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(textRange.getStartOffset() + offset,
                         collectorTextRange.getStartOffset()), group) {
             @Nullable
@@ -45,7 +41,7 @@ public class Collect extends Expression implements StreamsExpression {
                 return ".";
             }
         });
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(collectorTextRange.getEndOffset(),
                         textRange.getEndOffset()), group) {
             @Nullable
@@ -55,8 +51,7 @@ public class Collect extends Expression implements StreamsExpression {
             }
         });
         if (qualifier.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, qualifier.buildFoldRegions(qualifier.getElement(), document));
+            qualifier.buildFoldRegions(qualifier.getElement(), document, sink);
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
@@ -0,0 +1,102 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public class CompareToProvider extends AdvancedExpressionFoldingProvider<PsiBinaryExpression> {
+    public CompareToProvider() {
+        super(PsiBinaryExpression.class, "compareTo() comparisons");
+    }
+
+    @Override
+    public boolean isResolveCandidate(@NotNull PsiMethodCallExpression call) {
+        if ("compareTo".equals(call.getMethodExpression().getReferenceName())
+                && call.getArgumentList().getExpressions().length == 1
+                && call.getParent() instanceof PsiBinaryExpression) {
+            PsiBinaryExpression comparison = (PsiBinaryExpression) call.getParent();
+            return (comparison.getLOperand() == call ? comparison.getROperand() : comparison.getLOperand())
+                    instanceof PsiLiteralExpression;
+        }
+        return false;
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiBinaryExpression element, @Nullable Document document, boolean synthetic) {
+        if (element.getLOperand() instanceof PsiMethodCallExpression
+                && element.getROperand() instanceof PsiLiteralExpression
+                || element.getROperand() instanceof PsiMethodCallExpression &&
+                element.getLOperand() instanceof PsiLiteralExpression) {
+            PsiMethodCallExpression methodCallExpression = (PsiMethodCallExpression) (element
+                    .getLOperand() instanceof PsiMethodCallExpression
+                    ? element.getLOperand() : element.getROperand());
+
+            PsiLiteralExpression literalExpression = (PsiLiteralExpression) (element
+                    .getLOperand() instanceof PsiLiteralExpression
+                    ? element.getLOperand() : element.getROperand());
+            if (literalExpression.getText().equals("0") || literalExpression.getText().equals("-1") || literalExpression.getText().equals("1")) {
+                Optional<PsiElement> identifier = Stream.of(methodCallExpression.getMethodExpression().getChildren())
+                        .filter(c -> c instanceof PsiIdentifier).findAny();
+                if (identifier.isPresent() && identifier.get().getText().equals("compareTo") && methodCallExpression.getArgumentList().getExpressions().length == 1) {
+                    PsiMethod method = (PsiMethod) ResolveMemo.resolve(methodCallExpression.getMethodExpression());
+                    if (method != null) {
+                        PsiClass psiClass = method.getContainingClass();
+                        if (psiClass != null && (ClassFamily.of(psiClass).isSupported()
+                                ||AdvancedExpressionFoldingBuilder.unsupportedClassesMethodsExceptions.contains(method.getName()))) {
+                            Expression qualifier = methodCallExpression.getMethodExpression()
+                                    .getQualifierExpression() != null ? getExpression(methodCallExpression.getMethodExpression()
+                                    .getQualifierExpression(), document, true) : null;
+                            if (qualifier != null) {
+                                Expression argument = getExpression(methodCallExpression.getArgumentList()
+                                        .getExpressions()[0], document, true);
+                                if (argument != null) {
+                                    switch (element.getOperationSign().getText()) {
+                                        case "==":
+                                            switch (literalExpression.getText()) {
+                                                case "-1":
+                                                    return new Less(element, element.getTextRange(), Arrays.asList(qualifier, argument));
+                                                case "0":
+                                                    return new Equal(element, element.getTextRange(), Arrays.asList(qualifier, argument));
+                                                case "1":
+                                                    return new Greater(element, element.getTextRange(), Arrays.asList(qualifier, argument));
+                                            }
+                                        case "!=":
+                                            switch (literalExpression.getText()) {
+                                                case "1":
+                                                    return new LessEqual(element, element.getTextRange(), Arrays.asList(qualifier, argument));
+                                                case "0":
+                                                    return new NotEqual(element, element.getTextRange(), Arrays.asList(qualifier, argument));
+                                                case "-1":
+                                                    return new GreaterEqual(element, element.getTextRange(), Arrays.asList(qualifier, argument));
+                                            }
+                                        case "<":
+                                            switch (literalExpression.getText()) {
+                                                case "1":
+                                                    return new LessEqual(element, element.getTextRange(), Arrays.asList(qualifier, argument));
+                                                case "0":
+                                                    return new Less(element, element.getTextRange(), Arrays.asList(qualifier, argument));
+                                            }
+                                        case ">":
+                                            switch (literalExpression.getText()) {
+                                                case "-1":
+                                                    return new GreaterEqual(element, element.getTextRange(), Arrays.asList(qualifier, argument));
+                                                case "0":
+                                                    return new Greater(element, element.getTextRange(), Arrays.asList(qualifier, argument));
+                                            }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
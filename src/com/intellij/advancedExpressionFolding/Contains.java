@@ -8,9 +8,6 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
-
 public class Contains extends Expression implements CheckExpression {
     private final Expression object;
     private final Expression key;
@@ -32,10 +29,9 @@ public class Contains extends Expression implements CheckExpression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(Contains.class.getName());
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(object.getTextRange().getEndOffset(),
                         key.getTextRange().getStartOffset()), group) {
             @Nullable
@@ -44,7 +40,7 @@ public class Contains extends Expression implements CheckExpression {
                 return "[";
             }
         });
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(key.getTextRange().getEndOffset(),
                         getTextRange().getEndOffset()), group) {
             @Nullable
@@ -54,11 +50,10 @@ public class Contains extends Expression implements CheckExpression {
             }
         });
         if (object.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, object.buildFoldRegions(object.getElement(), document));
+            object.buildFoldRegions(object.getElement(), document, sink);
         }
         if (key.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, key.buildFoldRegions(key.getElement(), document));
+            key.buildFoldRegions(key.getElement(), document, sink);
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
@@ -7,8 +7,6 @@ import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class ElvisExpression extends Expression implements CheckExpression {
@@ -28,10 +26,9 @@ public class ElvisExpression extends Expression implements CheckExpression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(ElvisExpression.class.getName());
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(textRange.getStartOffset(), thenExpression.getTextRange().getStartOffset()),
                 group) {
             @Override
@@ -39,7 +36,7 @@ public class ElvisExpression extends Expression implements CheckExpression {
                 return "";
             }
         });
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(thenExpression.getTextRange().getEndOffset(),
                         elseExpression.getTextRange().getStartOffset()),
                 group) {
@@ -48,15 +45,14 @@ public class ElvisExpression extends Expression implements CheckExpression {
                 return " ?: "; // TODO: Eat spaces around
             }
         });
-        ShortElvisExpression.nullify(element, document, descriptors, group, elements,
+        ShortElvisExpression.nullify(element, document, sink, group, elements,
                 !(elements.size() == 1 && elements.get(0).equals(thenExpression.getTextRange())));
         if (thenExpression.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, thenExpression.buildFoldRegions(thenExpression.getElement(), document));
+            thenExpression.buildFoldRegions(thenExpression.getElement(), document, sink);
         }
         if (elseExpression.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, elseExpression.buildFoldRegions(elseExpression.getElement(), document));
+            elseExpression.buildFoldRegions(elseExpression.getElement(), document, sink);
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 
     @Override
@@ -0,0 +1,62 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class ElvisProvider extends AdvancedExpressionFoldingProvider<PsiConditionalExpression> {
+    public ElvisProvider() {
+        super(PsiConditionalExpression.class, "Elvis expressions");
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiConditionalExpression element, @Nullable Document document, boolean synthetic) {
+        return getConditionalExpression(element, document);
+    }
+
+    private static Expression getConditionalExpression(PsiConditionalExpression element, Document document) {
+        if (element.getCondition() instanceof PsiBinaryExpression) {
+            PsiBinaryExpression condition = (PsiBinaryExpression) element.getCondition();
+            if (condition.getOperationSign().getText().equals("!=")
+                    && (condition.getLOperand().getType() == PsiType.NULL
+                            && condition.getROperand() != null
+            || condition.getROperand().getType() == PsiType.NULL)
+                    && element.getThenExpression() != null
+                    && element.getElseExpression() != null) {
+                PsiElement qualifier = condition.getLOperand().getType() == PsiType.NULL
+                        ? condition.getROperand()
+                        : condition.getLOperand();
+                if (qualifier instanceof PsiReferenceExpression
+                        || (qualifier instanceof PsiMethodCallExpression
+                        && ((PsiMethodCallExpression) qualifier).getMethodExpression().getReferenceName()
+                        .startsWith("get")
+                        && ((PsiMethodCallExpression) qualifier).getArgumentList().getExpressions().length == 0)) {
+                    PsiReferenceExpression r = qualifier instanceof PsiReferenceExpression
+                            ? ((PsiReferenceExpression) qualifier)
+                            : ((PsiMethodCallExpression) qualifier).getMethodExpression();
+                    PsiElement target = ResolveMemo.resolve(r);
+                    List<PsiElement> references = SyntaxTraverser.psiTraverser(element.getThenExpression())
+                            .filter(e ->
+                                    e instanceof PsiReferenceExpression
+                                            && !(e.getParent() instanceof PsiMethodCallExpression)
+                                            && ResolveMemo.isReferenceTo((PsiReferenceExpression) e, target)
+                                    || e instanceof PsiMethodCallExpression && ResolveMemo.isReferenceTo(((PsiMethodCallExpression) e).getMethodExpression(), target)
+                            ).toList();
+                    if (references.size() > 0) {
+                        return new ElvisExpression(element, element.getTextRange(),
+                                getExpression(element.getCondition(), document, true),
+                                getExpression(element.getThenExpression(), document, true),
+                                getExpression(element.getElseExpression(), document, true),
+                                references.stream().map(PsiElement::getTextRange).collect(Collectors.toList()));
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -1,18 +1,18 @@
 package com.intellij.advancedExpressionFolding;
 
-import com.intellij.lang.folding.FoldingDescriptor;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 public abstract class Expression {
     private final static double EPSILON = 0.00001;
-    private static Map<Character, Character> superscriptMapping = new HashMap<Character, Character>() {
+    private static final Map<Character, Character> superscriptMapping = Collections.unmodifiableMap(new HashMap<Character, Character>() {
         {
             put('0', '⁰');
             put('1', '¹');
@@ -75,7 +75,7 @@ public abstract class Expression {
             put('W', 'ᵂ');
             put(' ', '❤');
         }
-    };
+    });
 
     protected PsiElement element;
     protected TextRange textRange;
@@ -90,7 +90,7 @@ public abstract class Expression {
         return format();
     }
 
-    private static Map<Character, Character> subscriptMapping = new HashMap<Character, Character>() {
+    private static final Map<Character, Character> subscriptMapping = Collections.unmodifiableMap(new HashMap<Character, Character>() {
         {
             put('0', '₀');
             put('1', '₁');
@@ -117,7 +117,7 @@ public abstract class Expression {
             put('v', 'ᵥ');
             put(' ', '❤');
         }
-    };
+    });
     private static double _1_4 = 1.0 / 4.0;
     private static double _1_2 = 1.0 / 2.0;
     private static double _3_4 = 3.0 / 4.0;
@@ -175,7 +175,10 @@ public abstract class Expression {
         return false;
     }
 
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    /**
+     * Appends the fold regions of this expression (and of its operands) to {@code sink}.
+     */
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         throw new UnsupportedOperationException();
     }
 
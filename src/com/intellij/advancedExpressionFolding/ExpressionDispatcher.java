@@ -0,0 +1,126 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.util.Computable;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethodCallExpression;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps PSI element classes to the providers registered for them. The providers applicable to a concrete PSI
+ * class are resolved once and then looked up by the element's class, so every element costs a single map lookup
+ * instead of a chain of instanceof checks. Method calls are additionally filtered by the method names the
+ * providers declare.
+ * <p>
+ * In the syntactic mode only the {@link DumbAware} providers are used: they need no resolve outside of the file and
+ * give the cheap first tier of fold regions.
+ */
+class ExpressionDispatcher {
+    private static final AdvancedExpressionFoldingProvider[] NO_PROVIDERS = new AdvancedExpressionFoldingProvider[0];
+    private static final ThreadLocal<Boolean> SYNTACTIC = ThreadLocal.withInitial(() -> false);
+
+    private final AdvancedExpressionFoldingProvider[] providers;
+    private final Map<Class<?>, AdvancedExpressionFoldingProvider[]> providersByClass = new ConcurrentHashMap<>();
+    private final Map<Class<?>, AdvancedExpressionFoldingProvider[]> syntacticProvidersByClass = new ConcurrentHashMap<>();
+
+    ExpressionDispatcher(@NotNull AdvancedExpressionFoldingProvider[] providers) {
+        this.providers = providers;
+    }
+
+    @NotNull
+    static ExpressionDispatcher getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    static boolean isSyntactic() {
+        return SYNTACTIC.get();
+    }
+
+    /**
+     * Runs {@code computable} with only the syntactic providers (or with all of them) on the current thread.
+     */
+    static <T> T compute(boolean syntactic, @NotNull Computable<T> computable) {
+        boolean previous = SYNTACTIC.get();
+        SYNTACTIC.set(syntactic);
+        try {
+            return computable.compute();
+        } finally {
+            SYNTACTIC.set(previous);
+        }
+    }
+
+    boolean isSupported(@NotNull PsiElement element) {
+        return getProviders(element.getClass(), isSyntactic()).length > 0;
+    }
+
+    @Nullable
+    Expression dispatch(@NotNull PsiElement element, @Nullable Document document, boolean synthetic) {
+        AdvancedExpressionFoldingProvider[] applicable = getProviders(element.getClass(), isSyntactic());
+        if (applicable.length == 0) {
+            return null;
+        }
+        boolean methodCall = element instanceof PsiMethodCallExpression;
+        String methodName = methodCall ? ((PsiMethodCallExpression) element).getMethodExpression().getReferenceName() : null;
+        AdvancedExpressionFoldingSettings settings = AdvancedExpressionFoldingSettings.getInstance();
+        for (AdvancedExpressionFoldingProvider provider : applicable) {
+            if (methodCall) {
+                Set<String> methodNames = provider.getMethodNames();
+                if (methodNames != null && (methodName == null || !methodNames.contains(methodName))) {
+                    continue;
+                }
+            }
+            if (!settings.isProviderEnabled(provider.getId())) {
+                continue;
+            }
+            Expression expression = provider.calculate(element, document, synthetic);
+            if (expression != null) {
+                return expression;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if one of the enabled providers is going to resolve {@code call}
+     */
+    boolean isResolveCandidate(@NotNull PsiMethodCallExpression call) {
+        AdvancedExpressionFoldingSettings settings = AdvancedExpressionFoldingSettings.getInstance();
+        for (AdvancedExpressionFoldingProvider provider : providers) {
+            if (provider.isResolveCandidate(call) && settings.isProviderEnabled(provider.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @NotNull
+    private AdvancedExpressionFoldingProvider[] getProviders(@NotNull Class<?> elementClass, boolean syntactic) {
+        Map<Class<?>, AdvancedExpressionFoldingProvider[]> cache = syntactic ? syntacticProvidersByClass : providersByClass;
+        AdvancedExpressionFoldingProvider[] result = cache.get(elementClass);
+        if (result == null) {
+            List<AdvancedExpressionFoldingProvider> applicable = new ArrayList<>();
+            for (AdvancedExpressionFoldingProvider provider : providers) {
+                if (provider.getElementClass().isAssignableFrom(elementClass)
+                        && (!syntactic || provider instanceof DumbAware)) {
+                    applicable.add(provider);
+                }
+            }
+            result = applicable.isEmpty() ? NO_PROVIDERS : applicable.toArray(NO_PROVIDERS);
+            cache.put(elementClass, result);
+        }
+        return result;
+    }
+
+    private static class Holder {
+        private static final ExpressionDispatcher INSTANCE =
+                new ExpressionDispatcher(AdvancedExpressionFoldingProvider.EP_NAME.getExtensions());
+    }
+}
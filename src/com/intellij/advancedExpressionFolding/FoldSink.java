@@ -0,0 +1,13 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.lang.folding.FoldingDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Accumulates the fold regions built for a file. Expressions append their descriptors (and those of their operands)
+ * directly, so no intermediate arrays are created while the regions are collected.
+ */
+@FunctionalInterface
+public interface FoldSink {
+    void add(@NotNull FoldingDescriptor descriptor);
+}
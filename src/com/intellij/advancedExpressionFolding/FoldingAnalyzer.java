@@ -0,0 +1,209 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.lang.folding.FoldingDescriptor;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.FoldingGroup;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.impl.PsiModificationTrackerImpl;
+import com.intellij.util.ConcurrencyUtil;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Folds Java files outside of any editor and collects per-file statistics: fold regions per expression family, build
+ * time, bytes allocated by the folding thread and references resolved. Files can be folded in parallel, each in its
+ * own read action; the providers and the builder only share immutable tables and thread-safe caches.
+ * <p>
+ * The files are folded with an unlimited budget and without the persistent cache or notifications, so the statistics
+ * show the raw cost of every file.
+ */
+class FoldingAnalyzer {
+    private final Project project;
+
+    FoldingAnalyzer(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    static List<VirtualFile> findJavaFiles(@NotNull VirtualFile root) {
+        List<VirtualFile> files = new ArrayList<>();
+        VfsUtilCore.iterateChildrenRecursively(root, null, file -> {
+            if (!file.isDirectory() && file.getFileType() == JavaFileType.INSTANCE) {
+                files.add(file);
+            }
+            return true;
+        });
+        return files;
+    }
+
+    /**
+     * @return the statistics of the Java files among {@code files}, in the same order
+     */
+    @NotNull
+    List<FileStatistics> analyze(@NotNull List<VirtualFile> files, int threads) throws InterruptedException {
+        List<FileStatistics> statistics = new ArrayList<>();
+        if (threads <= 1) {
+            for (VirtualFile file : files) {
+                ContainerUtil.addIfNotNull(statistics, analyze(file));
+            }
+            return statistics;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                ConcurrencyUtil.newNamedThreadFactory("Folding Analyzer"));
+        try {
+            List<Future<FileStatistics>> futures = new ArrayList<>(files.size());
+            for (VirtualFile file : files) {
+                futures.add(executor.submit(() -> analyze(file)));
+            }
+            for (Future<FileStatistics> future : futures) {
+                try {
+                    ContainerUtil.addIfNotNull(statistics, future.get());
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return statistics;
+    }
+
+    @Nullable
+    FileStatistics analyze(@NotNull VirtualFile file) {
+        return ApplicationManager.getApplication().runReadAction((Computable<FileStatistics>) () -> {
+            PsiFile psiFile = file.isValid() ? PsiManager.getInstance(project).findFile(file) : null;
+            Document document = psiFile != null ? PsiDocumentManager.getInstance(project).getDocument(psiFile) : null;
+            if (!(psiFile instanceof PsiJavaFile) || document == null) {
+                return null;
+            }
+            long resolves = ResolveMemo.getThreadResolveCount();
+            long allocated = getAllocatedBytes();
+            long start = System.nanoTime();
+            List<FoldingDescriptor> descriptors = new ArrayList<>();
+            FoldingBudget budget = new FoldingBudget();
+            AdvancedExpressionFoldingBuilder.computeFoldRegions(psiFile, document, false, budget, true, false,
+                    descriptors::add);
+            long time = System.nanoTime() - start;
+            FileStatistics statistics = new FileStatistics(file.getPath(), document.getLineCount(), descriptors.size(),
+                    budget.isComplete(), time, allocated >= 0 ? getAllocatedBytes() - allocated : -1,
+                    ResolveMemo.getThreadResolveCount() - resolves);
+            for (FoldingDescriptor descriptor : descriptors) {
+                statistics.families.merge(getFamily(descriptor), 1, Integer::sum);
+            }
+            return statistics;
+        });
+    }
+
+    /**
+     * Drops the PSI caches and bumps the PSI modification counts, which invalidates the cached expressions, code block
+     * regions, resolve memos and class families, so the next run does not just hit the caches of the previous one.
+     */
+    void dropCaches() {
+        Application application = ApplicationManager.getApplication();
+        application.invokeAndWait(() -> application.runWriteAction(() -> {
+            PsiManager psiManager = PsiManager.getInstance(project);
+            psiManager.dropPsiCaches();
+            ((PsiModificationTrackerImpl) psiManager.getModificationTracker()).incCounter();
+        }));
+    }
+
+    /**
+     * The fold groups are named after the expression classes that create them.
+     */
+    @NotNull
+    private static String getFamily(@NotNull FoldingDescriptor descriptor) {
+        FoldingGroup group = descriptor.getGroup();
+        if (group == null) {
+            return "Other";
+        }
+        String name = group.toString();
+        int postfix = name.indexOf(HighlightingExpression.GROUP_POSTFIX);
+        return StringUtil.getShortName(postfix >= 0 ? name.substring(0, postfix) : name);
+    }
+
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    static void writeJson(@NotNull List<FileStatistics> statistics, @NotNull Writer writer) throws IOException {
+        writer.write("[");
+        for (int i = 0; i < statistics.size(); i++) {
+            writer.write(i == 0 ? "\n  " : ",\n  ");
+            writer.write(statistics.get(i).toJson());
+        }
+        writer.write("\n]\n");
+        writer.flush();
+    }
+
+    static class FileStatistics {
+        private final String path;
+        private final int lines;
+        private final int folds;
+        private final boolean complete;
+        private final long timeNanos;
+        private final long allocatedBytes;
+        private final long resolves;
+        private final Map<String, Integer> families = new TreeMap<>();
+
+        /**
+         * @param complete false if some of the file could not be folded, e.g. because the indices were not ready
+         */
+        FileStatistics(String path, int lines, int folds, boolean complete, long timeNanos, long allocatedBytes,
+                       long resolves) {
+            this.path = path;
+            this.lines = lines;
+            this.folds = folds;
+            this.complete = complete;
+            this.timeNanos = timeNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.resolves = resolves;
+        }
+
+        @NotNull
+        String toJson() {
+            StringBuilder sb = new StringBuilder("{\"file\": \"").append(StringUtil.escapeStringCharacters(path))
+                    .append("\", \"lines\": ").append(lines)
+                    .append(", \"folds\": ").append(folds)
+                    .append(", \"complete\": ").append(complete)
+                    .append(", \"families\": {");
+            boolean first = true;
+            for (Map.Entry<String, Integer> entry : families.entrySet()) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                sb.append('"').append(entry.getKey()).append("\": ").append(entry.getValue());
+                first = false;
+            }
+            return sb.append("}, \"timeMillis\": ").append(String.format(Locale.ROOT, "%.3f", timeNanos / 1_000_000.0))
+                    .append(", \"allocatedBytes\": ").append(allocatedBytes)
+                    .append(", \"resolves\": ").append(resolves)
+                    .append("}").toString();
+        }
+    }
+}
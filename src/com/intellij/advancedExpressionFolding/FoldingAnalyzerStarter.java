@@ -0,0 +1,135 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.ide.impl.ProjectUtil;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarterEx;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Headless entry point that folds every Java file of a project and writes the statistics as JSON:
+ * <pre>idea foldingAnalyzer &lt;project directory&gt; [&lt;output file&gt;] [-threads=N] [-scaling]</pre>
+ * With {@code -threads}, files are folded on N threads. With {@code -scaling}, the whole project is folded with
+ * 1, 2, 4, 8 and 16 threads from cold caches and the wall time of every run is written instead.
+ */
+public class FoldingAnalyzerStarter extends ApplicationStarterEx {
+    private static final int[] SCALING_THREADS = {1, 2, 4, 8, 16};
+
+    @Override
+    public String getCommandName() {
+        return "foldingAnalyzer";
+    }
+
+    @Override
+    public boolean isHeadless() {
+        return true;
+    }
+
+    @Override
+    public void premain(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: " + getCommandName()
+                    + " <project directory> [<output file>] [-threads=N] [-scaling]");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Called on the event dispatch thread, which has to stay free while the project is indexed, so the analysis runs
+     * on a pooled thread.
+     */
+    @Override
+    public void main(String[] args) {
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            int status = 0;
+            try {
+                String outputPath = null;
+                int threads = 1;
+                boolean scaling = false;
+                for (int i = 2; i < args.length; i++) {
+                    if (args[i].startsWith("-threads=")) {
+                        threads = Integer.parseInt(args[i].substring("-threads=".length()));
+                    } else if (args[i].equals("-scaling")) {
+                        scaling = true;
+                    } else {
+                        outputPath = args[i];
+                    }
+                }
+                analyze(args[1], outputPath, threads, scaling);
+            } catch (Throwable e) {
+                e.printStackTrace();
+                status = 1;
+            }
+            System.exit(status);
+        });
+    }
+
+    private static void analyze(String projectPath, String outputPath, int threads, boolean scaling)
+            throws IOException, InterruptedException {
+        VirtualFile root = LocalFileSystem.getInstance().refreshAndFindFileByPath(projectPath);
+        if (root == null || !root.isDirectory()) {
+            throw new FileNotFoundException(projectPath);
+        }
+        Ref<Project> projectRef = Ref.create();
+        ApplicationManager.getApplication().invokeAndWait(() ->
+                projectRef.set(ProjectUtil.openOrImport(projectPath, null, false)));
+        Project project = projectRef.get();
+        if (project == null) {
+            throw new IOException("Cannot open project " + projectPath);
+        }
+        try {
+            DumbService.getInstance(project).waitForSmartMode();
+            if (DumbService.isDumb(project)) {
+                throw new IllegalStateException("The project is still being indexed, the statistics would be partial");
+            }
+            FoldingAnalyzer analyzer = new FoldingAnalyzer(project);
+            List<VirtualFile> files = FoldingAnalyzer.findJavaFiles(root);
+            try (Writer writer = outputPath != null
+                    ? new OutputStreamWriter(new FileOutputStream(outputPath), StandardCharsets.UTF_8)
+                    : new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) {
+                if (scaling) {
+                    writeScaling(analyzer, files, writer);
+                } else {
+                    analyzer.dropCaches();
+                    FoldingAnalyzer.writeJson(analyzer.analyze(files, threads), writer);
+                }
+            }
+        } finally {
+            ApplicationManager.getApplication().invokeAndWait(() -> ProjectManager.getInstance().closeProject(project));
+        }
+    }
+
+    /**
+     * Every run starts from invalidated PSI and folding caches, so no thread count benefits from the work of the
+     * previous one; a first run on all threads warms up the JIT and is not reported.
+     */
+    private static void writeScaling(FoldingAnalyzer analyzer, List<VirtualFile> files, Writer writer)
+            throws IOException, InterruptedException {
+        analyzer.analyze(files, SCALING_THREADS[SCALING_THREADS.length - 1]);
+        List<String> runs = new ArrayList<>();
+        long baseline = 0;
+        for (int threads : SCALING_THREADS) {
+            analyzer.dropCaches();
+            long start = System.nanoTime();
+            int folded = analyzer.analyze(files, threads).size();
+            long time = System.nanoTime() - start;
+            if (baseline == 0) {
+                baseline = time;
+            }
+            runs.add(String.format(Locale.ROOT, "{\"threads\": %d, \"files\": %d, \"wallMillis\": %.3f, \"speedup\": %.2f}",
+                    threads, folded, time / 1_000_000.0, (double) baseline / time));
+        }
+        writer.write("[\n  " + String.join(",\n  ", runs) + "\n]\n");
+        writer.flush();
+    }
+}
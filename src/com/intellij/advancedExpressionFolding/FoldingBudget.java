@@ -0,0 +1,107 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationGroup;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Bounds the work spent on folding one file. Once the node or the time limit is hit, the rest of the file is folded
+ * with the syntactic providers only; once the descriptor limit is hit, no more regions are collected.
+ */
+class FoldingBudget {
+    private static final NotificationGroup NOTIFICATION_GROUP =
+            NotificationGroup.balloonGroup("Advanced Expression Folding");
+    private static final Key<Boolean> REPORTED_KEY = Key.create("AdvancedExpressionFolding.budgetReported");
+
+    private final int maxNodes;
+    private final long deadline;
+    private final int maxDescriptors;
+    private int nodes;
+    private int descriptors;
+    private boolean complete = true;
+
+    FoldingBudget() {
+        this(Integer.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    FoldingBudget(int maxNodes, long deadline, int maxDescriptors) {
+        this.maxNodes = maxNodes;
+        this.deadline = deadline;
+        this.maxDescriptors = maxDescriptors;
+    }
+
+    @NotNull
+    static FoldingBudget forFile() {
+        AdvancedExpressionFoldingSettings settings = AdvancedExpressionFoldingSettings.getInstance();
+        if (!settings.isLimitLargeFiles()) {
+            return new FoldingBudget();
+        }
+        return new FoldingBudget(settings.getMaxNodes(), System.currentTimeMillis() + settings.getMaxMillis(),
+                settings.getMaxDescriptors());
+    }
+
+    /**
+     * @return a budget for a part of the walk, limited by what is left of this one; the nodes and descriptors it
+     * counts are not charged to this budget
+     */
+    @NotNull
+    FoldingBudget fork() {
+        return new FoldingBudget(maxNodes == Integer.MAX_VALUE ? maxNodes : Math.max(0, maxNodes - nodes), deadline,
+                maxDescriptors == Integer.MAX_VALUE ? maxDescriptors : Math.max(0, maxDescriptors - descriptors));
+    }
+
+    void addNodes(int count) {
+        nodes += count;
+    }
+
+    int getNodes() {
+        return nodes;
+    }
+
+    void addDescriptors(int count) {
+        descriptors += count;
+    }
+
+    /**
+     * @return true if the node or the time limit is exceeded
+     */
+    boolean isExhausted() {
+        return nodes > maxNodes || deadline != Long.MAX_VALUE && System.currentTimeMillis() > deadline;
+    }
+
+    boolean isFull() {
+        return descriptors >= maxDescriptors;
+    }
+
+    /**
+     * Records that some elements did not get all providers, because the indices were not ready or the budget ran out.
+     */
+    void markIncomplete() {
+        complete = false;
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Tells the user, once per file, that the file is folded only partially.
+     */
+    void report(@NotNull PsiFile file) {
+        VirtualFile virtualFile = file.getViewProvider().getVirtualFile();
+        if (virtualFile.getUserData(REPORTED_KEY) != null) {
+            return;
+        }
+        virtualFile.putUserData(REPORTED_KEY, Boolean.TRUE);
+        String content = isFull()
+                ? virtualFile.getName() + " has more than " + maxDescriptors + " folding regions, the rest is not folded"
+                : virtualFile.getName() + " is too large, only the basic folding is applied to its rest";
+        Notifications.Bus.notify(new Notification(NOTIFICATION_GROUP.getDisplayId(), "Advanced Expression Folding",
+                content, NotificationType.INFORMATION), file.getProject());
+    }
+}
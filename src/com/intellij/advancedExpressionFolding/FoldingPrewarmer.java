@@ -0,0 +1,51 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.progress.util.ReadTask;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Computes the fold regions of a file that has just been opened in a background read action, so the folding pass of
+ * its editor finds the expressions and the code block regions already cached. The regions themselves are dropped:
+ * nothing is stored on disk and no notification is shown. The work is bounded by the same budget as the folding pass
+ * and gives way to write actions: once canceled, it is not restarted and the folding pass does the work itself.
+ */
+class FoldingPrewarmer {
+
+    static void schedule(@NotNull Project project, @NotNull VirtualFile file) {
+        if (DumbService.isDumb(project)) {
+            return;
+        }
+        ProgressIndicatorUtils.scheduleWithWriteActionPriority(new ReadTask() {
+            @Override
+            public void computeInReadAction(@NotNull ProgressIndicator indicator) {
+                if (project.isDisposed() || !file.isValid() || DumbService.isDumb(project)) {
+                    return;
+                }
+                PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+                if (!(psiFile instanceof PsiJavaFile)) {
+                    return;
+                }
+                PsiDocumentManager documentManager = PsiDocumentManager.getInstance(project);
+                Document document = documentManager.getDocument(psiFile);
+                if (document != null && documentManager.isCommitted(document)) {
+                    AdvancedExpressionFoldingBuilder.computeFoldRegions(psiFile, document, false,
+                            FoldingBudget.forFile(), true, false, descriptor -> {});
+                }
+            }
+
+            @Override
+            public void onCanceled(@NotNull ProgressIndicator indicator) {
+            }
+        });
+    }
+}
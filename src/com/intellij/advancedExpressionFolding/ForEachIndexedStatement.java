@@ -8,8 +8,6 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-
 public class ForEachIndexedStatement extends Expression implements RangeExpression {
     private final TextRange declarationTextRange;
     private final TextRange indexTextRange;
@@ -43,14 +41,13 @@ public class ForEachIndexedStatement extends Expression implements RangeExpressi
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(ForEachIndexedStatement.class.getName());
         TextRange prefixRange = TextRange.create(textRange.getStartOffset(),
                 textRange.getStartOffset() + 1);
         String prefix = document.getText(prefixRange);
         if (varSyntax) {
-            descriptors.add(new FoldingDescriptor(element.getNode(), TextRange.create(textRange.getStartOffset(),
+            sink.add(new FoldingDescriptor(element.getNode(), TextRange.create(textRange.getStartOffset(),
                     indexTextRange.getStartOffset()), group) {
                 @Nullable
                 @Override
@@ -58,7 +55,7 @@ public class ForEachIndexedStatement extends Expression implements RangeExpressi
                     return prefix + (isFinal ? "val" : "var" ) + " (";
                 }
             });
-            descriptors.add(new FoldingDescriptor(element.getNode(), TextRange.create(indexTextRange.getEndOffset(),
+            sink.add(new FoldingDescriptor(element.getNode(), TextRange.create(indexTextRange.getEndOffset(),
                     variableTextRange.getStartOffset() - 1), group) {
                 @Nullable
                 @Override
@@ -67,14 +64,14 @@ public class ForEachIndexedStatement extends Expression implements RangeExpressi
                 }
             });
         } else {
-            descriptors.add(new FoldingDescriptor(element.getNode(), prefixRange, group) {
+            sink.add(new FoldingDescriptor(element.getNode(), prefixRange, group) {
                 @Nullable
                 @Override
                 public String getPlaceholderText() {
                     return  prefix + "(";
                 }
             });
-            descriptors.add(new FoldingDescriptor(element.getNode(), TextRange.create(indexTextRange.getEndOffset(),
+            sink.add(new FoldingDescriptor(element.getNode(), TextRange.create(indexTextRange.getEndOffset(),
                     declarationTextRange.getStartOffset()), group) {
                 @Nullable
                 @Override
@@ -83,7 +80,7 @@ public class ForEachIndexedStatement extends Expression implements RangeExpressi
                 }
             });
         }
-        descriptors.add(new FoldingDescriptor(element.getNode(), TextRange.create(variableTextRange.getEndOffset(),
+        sink.add(new FoldingDescriptor(element.getNode(), TextRange.create(variableTextRange.getEndOffset(),
                 arrayTextRange.getStartOffset()), group) {
             @Nullable
             @Override
@@ -91,7 +88,7 @@ public class ForEachIndexedStatement extends Expression implements RangeExpressi
                 return ") : ";
             }
         });
-        descriptors.add(new FoldingDescriptor(element.getNode(), TextRange.create(arrayTextRange.getEndOffset(),
+        sink.add(new FoldingDescriptor(element.getNode(), TextRange.create(arrayTextRange.getEndOffset(),
                 declarationTextRange.getEndOffset()), group) {
             @Nullable
             @Override
@@ -99,7 +96,6 @@ public class ForEachIndexedStatement extends Expression implements RangeExpressi
                 return ") {\n";
             }
         });
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 
     @Override
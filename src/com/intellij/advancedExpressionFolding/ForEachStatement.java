@@ -8,8 +8,6 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-
 public class ForEachStatement extends Expression implements RangeExpression {
     private final TextRange declarationTextRange;
     private final TextRange variableTextRange;
@@ -33,10 +31,9 @@ public class ForEachStatement extends Expression implements RangeExpression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(ForEachStatement.class.getName());
-        descriptors.add(new FoldingDescriptor(element.getNode(), TextRange.create(textRange.getStartOffset(),
+        sink.add(new FoldingDescriptor(element.getNode(), TextRange.create(textRange.getStartOffset(),
                 declarationTextRange.getStartOffset()), group) {
             @Nullable
             @Override
@@ -44,7 +41,7 @@ public class ForEachStatement extends Expression implements RangeExpression {
                 return "";
             }
         });
-        descriptors.add(new FoldingDescriptor(element.getNode(), TextRange.create(variableTextRange.getEndOffset(),
+        sink.add(new FoldingDescriptor(element.getNode(), TextRange.create(variableTextRange.getEndOffset(),
                 arrayTextRange.getStartOffset()), group) {
             @Nullable
             @Override
@@ -52,7 +49,7 @@ public class ForEachStatement extends Expression implements RangeExpression {
                 return " : ";
             }
         });
-        descriptors.add(new FoldingDescriptor(element.getNode(), TextRange.create(arrayTextRange.getEndOffset(),
+        sink.add(new FoldingDescriptor(element.getNode(), TextRange.create(arrayTextRange.getEndOffset(),
                 declarationTextRange.getEndOffset()), group) {
             @Nullable
             @Override
@@ -60,7 +57,6 @@ public class ForEachStatement extends Expression implements RangeExpression {
                 return ") {\n";
             }
         });
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 
     @Override
@@ -0,0 +1,156 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+public class ForStatementProvider extends AdvancedExpressionFoldingProvider<PsiForStatement> {
+    public ForStatementProvider() {
+        super(PsiForStatement.class, "For loops");
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiForStatement element, @Nullable Document document, boolean synthetic) {
+        return getForStatementExpression(element, document);
+    }
+
+    private static Expression getForStatementExpression(PsiForStatement element, @Nullable Document document) {
+        PsiJavaToken lParenth = element.getLParenth();
+        PsiJavaToken rParenth = element.getRParenth();
+        PsiStatement initialization = element.getInitialization();
+        PsiStatement update = element.getUpdate();
+        PsiExpression condition = element.getCondition();
+        if (lParenth != null && rParenth != null
+                && initialization instanceof PsiDeclarationStatement
+                && ((PsiDeclarationStatement) initialization).getDeclaredElements().length == 1
+                && ((PsiDeclarationStatement) initialization).getDeclaredElements()[0] instanceof PsiVariable
+                && update != null && update.getChildren().length == 1
+                && update.getChildren()[0] instanceof PsiPostfixExpression
+                && ((PsiPostfixExpression)update.getChildren()[0]).getOperand() instanceof PsiReferenceExpression
+                && ((PsiPostfixExpression)update.getChildren()[0]).getOperationSign().getText().equals("++")
+                && ((PsiPostfixExpression)update.getChildren()[0]).getOperand().getReference() != null
+                && condition instanceof PsiBinaryExpression
+                && ((PsiBinaryExpression) condition).getLOperand() instanceof PsiReferenceExpression
+                && ((PsiBinaryExpression) condition).getLOperand().getReference() != null
+                && ((PsiBinaryExpression) condition).getROperand() != null) {
+            PsiElement updateVariable = ResolveMemo.resolve((PsiReferenceExpression) ((PsiPostfixExpression) update.getChildren()[0]).getOperand());
+            PsiElement conditionVariable = ResolveMemo.resolve((PsiReferenceExpression) ((PsiBinaryExpression) condition).getLOperand());
+            if (updateVariable == ((PsiDeclarationStatement) initialization).getDeclaredElements()[0]
+                    && updateVariable == conditionVariable
+                    && ("int".equals(((PsiVariable) updateVariable).getType().getCanonicalText())
+                    || "long".equals(((PsiVariable) updateVariable).getType().getCanonicalText()))) {
+                PsiVariable indexVariable = (PsiVariable) updateVariable;
+                Optional<PsiElement> identifier = Stream.of(((PsiDeclarationStatement) initialization).getDeclaredElements()[0].getChildren())
+                        .filter(c -> c instanceof PsiIdentifier).findAny();
+                Variable variable = new Variable(identifier.get(), identifier.get().getTextRange(), identifier.get().getText());
+                Expression start = getExpression(
+                        ((PsiVariable) ((PsiDeclarationStatement) initialization).getDeclaredElements()[0])
+                                .getInitializer(), document, true);
+                Expression end = getExpression(((PsiBinaryExpression) condition).getROperand(), document, true);
+                String sign = ((PsiBinaryExpression) condition).getOperationSign().getText();
+                    /*String type = updateVariable.getType().getCanonicalText();*/
+                if (variable != null && start != null && end != null && ("<".equals(sign) || "<=".equals(sign))) {
+                    if (element.getBody() instanceof PsiBlockStatement
+                            && ((PsiBlockStatement) element.getBody()).getCodeBlock().getStatements().length > 0
+                            && ((PsiBlockStatement) element.getBody()).getCodeBlock().getStatements()[0] instanceof PsiDeclarationStatement
+                            && ((PsiDeclarationStatement) ((PsiBlockStatement) element.getBody()).getCodeBlock()
+                            .getStatements()[0]).getDeclaredElements().length == 1) {
+                        if (start instanceof NumberLiteral && ((NumberLiteral) start).getNumber().equals(0)) {
+                            PsiVariable declaration = (PsiVariable) ((PsiDeclarationStatement) ((PsiBlockStatement) element.getBody())
+                                    .getCodeBlock()
+                                    .getStatements()[0]).getDeclaredElements()[0];
+                            PsiIdentifier variableName = declaration.getNameIdentifier();
+                            PsiExpression initializer = declaration.getInitializer();
+                            if (initializer instanceof PsiArrayAccessExpression
+                                    && ((PsiArrayAccessExpression) initializer).getIndexExpression() instanceof PsiReferenceExpression
+                                    && ResolveMemo.isReferenceTo((PsiReferenceExpression) ((PsiArrayAccessExpression) initializer)
+                                    .getIndexExpression(), indexVariable)
+                                    && ((PsiBinaryExpression) condition).getROperand() instanceof PsiReferenceExpression
+                                    && ((PsiReferenceExpression) ((PsiBinaryExpression) condition).getROperand()).getQualifierExpression() instanceof PsiReferenceExpression
+                                    && ((PsiArrayAccessExpression) initializer).getArrayExpression() instanceof PsiReferenceExpression
+                                    && ResolveMemo.isReferenceTo((PsiReferenceExpression) ((PsiReferenceExpression) ((PsiBinaryExpression) condition)
+                                    .getROperand()).getQualifierExpression(),
+                                    ResolveMemo.resolve((PsiReferenceExpression) ((PsiArrayAccessExpression) initializer).getArrayExpression()))) {
+                                PsiExpression arrayExpression = ((PsiArrayAccessExpression) initializer)
+                                        .getArrayExpression();
+                                List<PsiElement> references = SyntaxTraverser.psiTraverser(element.getBody()).filter(e -> e instanceof PsiReferenceExpression
+                                        && ResolveMemo.isReferenceTo((PsiReferenceExpression) e, indexVariable)).toList();
+                                if (references.size() == 1) {
+                                    return new ForEachStatement(element, TextRange.create(
+                                            element.getInitialization().getTextRange().getStartOffset(),
+                                            declaration.getTextRange().getEndOffset()),
+                                            declaration.getTextRange(), variableName.getTextRange(),
+                                            arrayExpression.getTextRange(),
+                                            variableName.getText(), arrayExpression.getText());
+                                } else {
+                                    PsiIdentifier indexName = indexVariable.getNameIdentifier();
+                                    AdvancedExpressionFoldingSettings settings = AdvancedExpressionFoldingSettings.getInstance();
+                                    boolean isFinal = AdvancedExpressionFoldingBuilder.calculateIfFinal(declaration) && AdvancedExpressionFoldingBuilder.calculateIfFinal(indexVariable);
+                                    return new ForEachIndexedStatement(element, TextRange.create(
+                                            element.getInitialization().getTextRange().getStartOffset() - 1,
+                                            declaration.getTextRange().getEndOffset()),
+                                            declaration.getTextRange(),
+                                            indexName.getTextRange(), variableName.getTextRange(),
+                                            arrayExpression.getTextRange(),
+                                            indexName.getText(),
+                                            variableName.getText(),
+                                            arrayExpression.getText(), settings.isVarExpressionsCollapse(),
+                                            isFinal);
+                                }
+                            } else if (initializer instanceof PsiMethodCallExpression
+                                    && ((PsiMethodCallExpression) initializer).getArgumentList().getExpressions().length == 1
+                                    && ((PsiMethodCallExpression) initializer).getArgumentList().getExpressions()[0] instanceof PsiReferenceExpression
+                                    && ResolveMemo.isReferenceTo((PsiReferenceExpression) ((PsiMethodCallExpression) initializer).getArgumentList().getExpressions()[0], indexVariable)
+                                    && ((PsiBinaryExpression) condition).getROperand() instanceof PsiMethodCallExpression
+                                    && ((PsiMethodCallExpression) ((PsiBinaryExpression) condition).getROperand()).getMethodExpression().getQualifierExpression() instanceof PsiReferenceExpression
+                                    && ((PsiMethodCallExpression) initializer).getMethodExpression().getQualifierExpression() instanceof PsiReferenceExpression
+                                    && ResolveMemo.isReferenceTo((PsiReferenceExpression) ((PsiMethodCallExpression) ((PsiBinaryExpression) condition)
+                                    .getROperand()).getMethodExpression().getQualifierExpression(),
+                                    ResolveMemo.resolve((PsiReferenceExpression) ((PsiMethodCallExpression) initializer).getMethodExpression()
+                                            .getQualifierExpression()))) {
+                                PsiExpression arrayExpression = ((PsiMethodCallExpression) initializer).getMethodExpression().getQualifierExpression();
+                                List<PsiElement> references = SyntaxTraverser.psiTraverser(element.getBody()).filter(e -> e instanceof PsiReferenceExpression
+                                        && ResolveMemo.isReferenceTo((PsiReferenceExpression) e, indexVariable)).toList();
+                                if (references.size() == 1) {
+                                    return new ForEachStatement(element, TextRange.create(
+                                            element.getInitialization().getTextRange().getStartOffset(),
+                                            declaration.getTextRange().getEndOffset()),
+                                            declaration.getTextRange(), variableName.getTextRange(),
+                                            arrayExpression.getTextRange(),
+                                            variableName.getText(), arrayExpression.getText());
+                                } else {
+                                    PsiIdentifier indexName = indexVariable.getNameIdentifier();
+                                    AdvancedExpressionFoldingSettings settings = AdvancedExpressionFoldingSettings.getInstance();
+                                    boolean isFinal = AdvancedExpressionFoldingBuilder.calculateIfFinal(declaration) && AdvancedExpressionFoldingBuilder.calculateIfFinal(indexVariable);
+                                    return new ForEachIndexedStatement(element, TextRange.create(
+                                            element.getInitialization().getTextRange().getStartOffset() - 1,
+                                            declaration.getTextRange().getEndOffset()),
+                                            declaration.getTextRange(),
+                                            indexName.getTextRange(), variableName.getTextRange(),
+                                            arrayExpression.getTextRange(),
+                                            indexName.getText(),
+                                            variableName.getText(),
+                                            arrayExpression.getText(), settings.isVarExpressionsCollapse(),
+                                            isFinal);
+                                }
+                            }
+
+                        }
+                    }
+                    int startOffset = lParenth.getTextRange().getStartOffset() + 1;
+                    int endOffset = rParenth.getTextRange().getEndOffset() - 1;
+                    ForStatement expression = new ForStatement(element, TextRange.create(startOffset, endOffset), variable,
+                            start, true, end, "<=".equals(sign));
+                    return expression.simplify(true);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -9,7 +9,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -90,10 +89,9 @@ public abstract class Function extends Expression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(getClass().getName());
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(getTextRange().getStartOffset(),
                         operands.get(0).getTextRange().getStartOffset()), group) {
             @Nullable
@@ -103,13 +101,13 @@ public abstract class Function extends Expression {
             }
         });
         if (operands.get(0).supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, operands.get(0).buildFoldRegions(operands.get(0).getElement(), document));
+            operands.get(0).buildFoldRegions(operands.get(0).getElement(), document, sink);
         }
         if (operands.size() == 2) {
             TextRange commaOffset = TextRange.create(operands.get(0).getTextRange().getEndOffset(),
                     operands.get(1).getTextRange().getStartOffset());
             if (", ".equals(document.getText(commaOffset))) {
-                descriptors.add(new FoldingDescriptor(element.getNode(), commaOffset, group) {
+                sink.add(new FoldingDescriptor(element.getNode(), commaOffset, group) {
                     @Nullable
                     @Override
                     public String getPlaceholderText() {
@@ -117,12 +115,12 @@ public abstract class Function extends Expression {
                     }
                 });
                 if (operands.get(1).supportsFoldRegions(document, false)) {
-                    Collections.addAll(descriptors, operands.get(1).buildFoldRegions(operands.get(1).getElement(), document));
+                    operands.get(1).buildFoldRegions(operands.get(1).getElement(), document, sink);
                 }
             }
         }
         if (operands.get(operands.size() - 1).getTextRange().getEndOffset() < getTextRange().getEndOffset()) {
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(operands.get(operands.size() - 1).getTextRange().getEndOffset(),
                             getTextRange().getEndOffset()), group) {
                 @Nullable
@@ -132,6 +130,5 @@ public abstract class Function extends Expression {
                 }
             });
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
@@ -7,9 +7,6 @@ import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.Collections;
-
 public class Get extends Expression implements GetExpression {
     private final Expression object;
     private final Expression key;
@@ -45,11 +42,10 @@ public class Get extends Expression implements GetExpression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(Get.class.getName());
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
         if (style == Style.NORMAL) {
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(object.getTextRange().getEndOffset(),
                             key.getTextRange().getStartOffset()), group) {
                 @Override
@@ -57,7 +53,7 @@ public class Get extends Expression implements GetExpression {
                     return "[";
                 }
             });
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(key.getTextRange().getEndOffset(),
                             getTextRange().getEndOffset()), group) {
                 @Override
@@ -66,7 +62,7 @@ public class Get extends Expression implements GetExpression {
                 }
             });
         } else {
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(object.getTextRange().getEndOffset(),
                             key.getTextRange().getStartOffset() - 1), group) {
                 @Override
@@ -74,7 +70,7 @@ public class Get extends Expression implements GetExpression {
                     return "." + (style == Style.FIRST ? "first" : "last");
                 }
             });
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(key.getTextRange().getStartOffset(),
                             key.getTextRange().getEndOffset()), group) {
                 @Override
@@ -85,13 +81,12 @@ public class Get extends Expression implements GetExpression {
         }
         // TODO: Generalize it
         if (object.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, object.buildFoldRegions(object.getElement(), document));
+            object.buildFoldRegions(object.getElement(), document, sink);
         }
         if (style == Style.NORMAL) {
             if (key.supportsFoldRegions(document, false)) {
-                Collections.addAll(descriptors, key.buildFoldRegions(key.getElement(), document));
+                key.buildFoldRegions(key.getElement(), document, sink);
             }
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
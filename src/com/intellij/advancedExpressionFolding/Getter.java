@@ -8,9 +8,6 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
-
 public class Getter extends Expression implements GettersSetters {
     private String name;
     private TextRange getterTextRange;
@@ -34,9 +31,8 @@ public class Getter extends Expression implements GettersSetters {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
-        descriptors.add(
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
+        sink.add(
                 new FoldingDescriptor(element.getNode(), getterTextRange,
                         FoldingGroup.newGroup(Getter.class.getName())) {
                     @Nullable
@@ -47,8 +43,7 @@ public class Getter extends Expression implements GettersSetters {
                 }
         );
         if (object != null && object.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, object.buildFoldRegions(object.getElement(), document));
+            object.buildFoldRegions(object.getElement(), document, sink);
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
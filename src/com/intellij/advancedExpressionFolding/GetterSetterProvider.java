@@ -0,0 +1,75 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public class GetterSetterProvider extends AdvancedExpressionFoldingProvider<PsiMethodCallExpression> {
+    public GetterSetterProvider() {
+        super(PsiMethodCallExpression.class, "Getters and setters");
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiMethodCallExpression element, @Nullable Document document, boolean synthetic) {
+        return getGetterSetterExpression(element, document);
+    }
+
+    @Nullable
+    private static Expression getGetterSetterExpression(PsiMethodCallExpression element, @Nullable Document document) {
+        Optional<PsiElement> identifier = Stream.of(element.getMethodExpression().getChildren())
+                .filter(c -> c instanceof PsiIdentifier).findAny();
+        if (identifier.isPresent() && ((identifier.get().getText().startsWith("get") && identifier.get().getText().length() > 3)
+                || (identifier.get().getText().startsWith("is") && identifier.get().getText().length() > 2))
+                && element.getArgumentList().getExpressions().length == 0) {
+            return new Getter(element, element.getTextRange(), TextRange.create(identifier.get().getTextRange().getStartOffset(),
+                    element.getTextRange().getEndOffset()),
+                    element.getMethodExpression().getQualifierExpression() != null
+                            ? getExpression(element.getMethodExpression().getQualifierExpression(), document, true)
+                            : null,
+                    guessPropertyName(identifier.get().getText()));
+        } else if (identifier.isPresent()
+                && identifier.get().getText().startsWith("set")
+                && identifier.get().getText().length() > 3
+                && Character.isUpperCase(identifier.get().getText().charAt(3))
+                && element.getArgumentList().getExpressions().length == 1
+                && element.getParent() instanceof PsiStatement
+                && (element.getMethodExpression().getQualifierExpression() == null
+                    || !(element.getMethodExpression().getQualifierExpression() instanceof PsiMethodCallExpression)
+                    || !(((PsiMethodCallExpression)element.getMethodExpression().getQualifierExpression()).getMethodExpression().getReferenceName().startsWith("set")))) {
+            return new Setter(element, element.getTextRange(), TextRange.create(identifier.get().getTextRange().getStartOffset(),
+                    element.getTextRange().getEndOffset()),
+                    getExpression(element.getMethodExpression().getQualifierExpression(), document, true),
+                    guessPropertyName(identifier.get().getText()),
+                    getExpression(element.getArgumentList().getExpressions()[0], document, true));
+        }
+        return null;
+    }
+
+    private static String guessPropertyName(String text) {
+        StringBuilder sb = new StringBuilder();
+        if (text.startsWith("get")) {
+            sb.append(text.substring(3));
+        } else if (text.startsWith("set")) {
+            sb.append(text.substring(3));
+        } else if (text.startsWith("is")) {
+            sb.append(text.substring(2));
+        } else {
+            sb.append(text);
+        }
+        for (int i = 0; i < sb.length(); i++) {
+            if (Character.isUpperCase(sb.charAt(i)) &&
+                    (i == sb.length() - 1 || Character.isUpperCase(sb.charAt(i + 1)) || i == 0)) {
+                sb.setCharAt(i, Character.toLowerCase(sb.charAt(i)));
+            } else if (Character.isLowerCase(sb.charAt(i))) {
+                break;
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,317 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.codeInsight.hint.DocumentFragmentTooltipRenderer;
+import com.intellij.codeInsight.hint.TooltipController;
+import com.intellij.codeInsight.hint.TooltipGroup;
+import com.intellij.codeInsight.hint.TooltipRenderer;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.editor.DocumentFragment;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.FoldRegion;
+import com.intellij.openapi.editor.FoldingGroup;
+import com.intellij.openapi.editor.VisualPosition;
+import com.intellij.openapi.editor.event.*;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.impl.FoldingModelImpl;
+import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Key;
+import com.intellij.util.Alarm;
+import com.intellij.util.ArrayUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.*;
+
+/**
+ * The highlighted fold regions of one editor. A single pair of mouse listeners per editor finds the collapsed region
+ * under the pointer, shows its text in a tooltip and expands it on click. Mouse moves within the same region are
+ * ignored, the tooltip is shown once the pointer has rested on a region for {@link #TOOLTIP_DELAY_MS}, and its renderer
+ * is reused until the region or the document changes.
+ * <p>
+ * The regions are kept sorted by the start offsets of their highlighters, which follow document changes by
+ * themselves; a lookup is a binary search plus a scan over the regions that may enclose the offset. After a document
+ * change the order is checked again on the next lookup, as removed text may have collapsed some of the ranges.
+ * <p>
+ * The state is disposed together with the file editor, which removes the listeners and the highlighters and detaches
+ * it from the editor; regions removed from the folding model are dropped after every folding update.
+ * <p>
+ * Fold state changes are only recorded while a batch folding operation runs and are applied together once it ends,
+ * see {@link #update(Map, Collection)}, so collapsing all regions of a big file does not reorder the regions per fold.
+ */
+class HighlightedRegions implements Disposable {
+    private static final Key<HighlightedRegions> KEY = Key.create("AdvancedExpressionFolding.highlightedRegions");
+    private static final TooltipGroup FOLDING_TOOLTIP_GROUP = new TooltipGroup("FOLDING_TOOLTIP_GROUP", 10);
+    private static final int TOOLTIP_DELAY_MS = 150;
+
+    private final EditorEx editor;
+    private final TooltipController controller = TooltipController.getInstance();
+    private final Map<FoldRegion, Entry> entries = new HashMap<>();
+    private final List<Entry> sorted = new ArrayList<>();
+    private final Set<FoldRegion> changed = new LinkedHashSet<>();
+    /**
+     * The largest end offset among the first i + 1 sorted entries, so the scan for enclosing regions knows when to stop.
+     */
+    private int[] maxEnds = ArrayUtil.EMPTY_INT_ARRAY;
+    private boolean maxEndsValid;
+    private boolean sortedValid = true;
+
+    private final Alarm tooltipAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+    @Nullable
+    private FoldRegion hoveredRegion;
+    @Nullable
+    private FoldRegion rendererRegion;
+    private long rendererStamp;
+    @Nullable
+    private TooltipRenderer renderer;
+
+    private final EditorMouseMotionListener motionListener = new EditorMouseMotionAdapter() {
+        @Override
+        public void mouseMoved(EditorMouseEvent e) {
+            FoldRegion region = e.getArea() == EditorMouseEventArea.EDITING_AREA ? findRegion(getOffset(e)) : null;
+            if (region == hoveredRegion) {
+                return;
+            }
+            hoveredRegion = region;
+            tooltipAlarm.cancelAllRequests();
+            if (region != null) {
+                final Point p = SwingUtilities.convertPoint((Component) e.getMouseEvent().getSource(), e.getMouseEvent().getPoint(),
+                        editor.getComponent().getRootPane().getLayeredPane());
+                tooltipAlarm.addRequest(() -> showTooltip(region, p), TOOLTIP_DELAY_MS);
+            } else {
+                controller.cancelTooltip(FOLDING_TOOLTIP_GROUP, e.getMouseEvent(), true);
+            }
+        }
+    };
+
+    private final EditorMouseListener mouseListener = new EditorMouseAdapter() {
+        @Override
+        public void mouseClicked(EditorMouseEvent e) {
+            if (e.getArea() == EditorMouseEventArea.EDITING_AREA) {
+                FoldRegion region = findRegion(getOffset(e));
+                if (region != null) {
+                    resetHover();
+                    editor.getFoldingModel().runBatchFoldingOperation(() -> region.setExpanded(true));
+                }
+            }
+        }
+
+        @Override
+        public void mouseExited(EditorMouseEvent e) {
+            resetHover();
+        }
+    };
+
+    private HighlightedRegions(@NotNull EditorEx editor) {
+        this.editor = editor;
+    }
+
+    @Nullable
+    static HighlightedRegions get(@NotNull Editor editor) {
+        return editor.getUserData(KEY);
+    }
+
+    /**
+     * @param parentDisposable disposed together with the editor, e.g. its file editor
+     */
+    @NotNull
+    static HighlightedRegions install(@NotNull EditorEx editor, @NotNull Disposable parentDisposable) {
+        HighlightedRegions regions = new HighlightedRegions(editor);
+        editor.putUserData(KEY, regions);
+        editor.addEditorMouseMotionListener(regions.motionListener);
+        editor.addEditorMouseListener(regions.mouseListener);
+        editor.getDocument().addDocumentListener(new DocumentAdapter() {
+            @Override
+            public void documentChanged(DocumentEvent e) {
+                regions.sortedValid = false;
+                regions.hoveredRegion = null;
+            }
+        }, regions);
+        Disposer.register(parentDisposable, regions);
+        return regions;
+    }
+
+    @Override
+    public void dispose() {
+        editor.removeEditorMouseMotionListener(motionListener);
+        editor.removeEditorMouseListener(mouseListener);
+        if (!editor.isDisposed()) {
+            for (Entry entry : sorted) {
+                editor.getMarkupModel().removeHighlighter(entry.highlighter);
+            }
+        }
+        entries.clear();
+        sorted.clear();
+        changed.clear();
+        resetHover();
+        rendererRegion = null;
+        renderer = null;
+        maxEnds = ArrayUtil.EMPTY_INT_ARRAY;
+        editor.putUserData(KEY, null);
+    }
+
+    /**
+     * Drops the regions that are no longer in the folding model along with their highlighters.
+     */
+    void purge() {
+        List<FoldRegion> invalid = new ArrayList<>();
+        for (FoldRegion region : entries.keySet()) {
+            if (!region.isValid()) {
+                invalid.add(region);
+            }
+        }
+        update(Collections.emptyMap(), invalid);
+    }
+
+    /**
+     * Records a region whose state changed during the current batch folding operation.
+     */
+    void regionChanged(@NotNull FoldRegion region) {
+        changed.add(region);
+    }
+
+    /**
+     * @return the regions changed since the previous call
+     */
+    @NotNull
+    List<FoldRegion> takeChangedRegions() {
+        List<FoldRegion> result = new ArrayList<>(changed);
+        changed.clear();
+        return result;
+    }
+
+    @NotNull
+    EditorEx getEditor() {
+        return editor;
+    }
+
+    /**
+     * Highlights the {@code added} regions, replacing their previous highlighters, and drops the {@code removed} ones.
+     * The entries are removed in one pass and sorted once on the next lookup.
+     */
+    void update(@NotNull Map<FoldRegion, RangeHighlighter> added, @NotNull Collection<FoldRegion> removed) {
+        Set<Entry> dropped = new HashSet<>();
+        for (FoldRegion region : removed) {
+            Entry entry = entries.remove(region);
+            if (entry != null) {
+                dropped.add(entry);
+            }
+        }
+        for (Map.Entry<FoldRegion, RangeHighlighter> e : added.entrySet()) {
+            Entry entry = new Entry(e.getKey(), e.getValue());
+            Entry previous = entries.put(e.getKey(), entry);
+            if (previous != null) {
+                dropped.add(previous);
+            }
+            sorted.add(entry);
+            sortedValid = false;
+        }
+        if (!dropped.isEmpty()) {
+            sorted.removeIf(dropped::contains);
+            for (Entry entry : dropped) {
+                editor.getMarkupModel().removeHighlighter(entry.highlighter);
+            }
+            maxEndsValid = false;
+        }
+    }
+
+    /**
+     * @return the innermost collapsed region whose highlighted expression contains {@code offset}
+     */
+    @Nullable
+    private FoldRegion findRegion(int offset) {
+        validate();
+        for (int i = findLastStartingAt(offset); i >= 0 && maxEnds[i] > offset; i--) {
+            Entry entry = sorted.get(i);
+            if (!entry.region.isExpanded() && offset < entry.highlighter.getEndOffset()) {
+                return entry.region;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the index of the last entry starting at or before {@code offset}, or -1
+     */
+    private int findLastStartingAt(int offset) {
+        int low = 0;
+        int high = sorted.size() - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (sorted.get(mid).highlighter.getStartOffset() <= offset) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private void validate() {
+        if (!sortedValid) {
+            entries.values().removeIf(entry -> !entry.highlighter.isValid());
+            sorted.removeIf(entry -> !entry.highlighter.isValid());
+            sorted.sort(Comparator.comparingInt(entry -> entry.highlighter.getStartOffset()));
+            sortedValid = true;
+            maxEndsValid = false;
+        }
+        if (!maxEndsValid) {
+            maxEnds = new int[sorted.size()];
+            int maxEnd = -1;
+            for (int i = 0; i < maxEnds.length; i++) {
+                maxEnd = Math.max(maxEnd, sorted.get(i).highlighter.getEndOffset());
+                maxEnds[i] = maxEnd;
+            }
+            maxEndsValid = true;
+        }
+    }
+
+    private void showTooltip(@NotNull FoldRegion region, @NotNull Point p) {
+        if (region != hoveredRegion || !region.isValid() || region.isExpanded()) {
+            return;
+        }
+        long stamp = editor.getDocument().getModificationStamp();
+        if (renderer == null || rendererRegion != region || rendererStamp != stamp) {
+            renderer = new DocumentFragmentTooltipRenderer(createDocumentFragment(region));
+            rendererRegion = region;
+            rendererStamp = stamp;
+        }
+        controller.showTooltip(editor, p, renderer, false, FOLDING_TOOLTIP_GROUP);
+    }
+
+    private void resetHover() {
+        tooltipAlarm.cancelAllRequests();
+        hoveredRegion = null;
+    }
+
+    private int getOffset(@NotNull EditorMouseEvent e) {
+        VisualPosition visualPosition = editor.xyToVisualPosition(e.getMouseEvent().getPoint());
+        return editor.logicalPositionToOffset(editor.visualToLogicalPosition(visualPosition));
+    }
+
+    private DocumentFragment createDocumentFragment(FoldRegion fold) {
+        final FoldingGroup group = fold.getGroup();
+        final int foldStart = fold.getStartOffset();
+        if (group != null) {
+            final int endOffset = ((FoldingModelImpl) editor.getFoldingModel()).getEndOffset(group);
+            return new DocumentFragment(editor.getDocument(), foldStart, endOffset);
+        }
+
+        final int oldEnd = fold.getEndOffset();
+        return new DocumentFragment(editor.getDocument(), foldStart, oldEnd);
+    }
+
+    private static class Entry {
+        private final FoldRegion region;
+        private final RangeHighlighter highlighter;
+
+        Entry(FoldRegion region, RangeHighlighter highlighter) {
+            this.region = region;
+            this.highlighter = highlighter;
+        }
+    }
+}
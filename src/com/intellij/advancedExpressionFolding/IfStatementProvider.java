@@ -0,0 +1,90 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+public class IfStatementProvider extends AdvancedExpressionFoldingProvider<PsiIfStatement> {
+    public IfStatementProvider() {
+        super(PsiIfStatement.class, "Null-checking if statements");
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiIfStatement element, @Nullable Document document, boolean synthetic) {
+        return getIfExpression(element, document);
+    }
+
+    private static Expression getIfExpression(PsiIfStatement element, Document document) {
+        if (element.getCondition() instanceof PsiBinaryExpression) {
+            PsiBinaryExpression condition = (PsiBinaryExpression) element.getCondition();
+            if (condition.getOperationSign().getText().equals("!=")
+                    && element.getElseBranch() == null
+                    && (condition.getLOperand().getType() == PsiType.NULL
+                    && condition.getROperand() != null
+                    || condition.getROperand() != null && condition.getROperand().getType() == PsiType.NULL)
+                    && element.getThenBranch() != null) {
+                PsiStatement thenStatement = element.getThenBranch();
+                if (thenStatement.getChildren().length == 1 && thenStatement
+                        .getChildren()[0] instanceof PsiCodeBlock) {
+                    PsiStatement[] statements = ((PsiCodeBlock) thenStatement.getChildren()[0]).getStatements();
+                    if (statements.length == 1) {
+                        thenStatement = statements[0];
+                    } else {
+                        return null;
+                    }
+                }
+                PsiElement qualifier = condition.getLOperand().getType() == PsiType.NULL
+                        ? condition.getROperand()
+                        : condition.getLOperand();
+                if (qualifier instanceof PsiReferenceExpression
+                        || (qualifier instanceof PsiMethodCallExpression
+                        && ((PsiMethodCallExpression) qualifier).getMethodExpression().getReferenceName()
+                        .startsWith("get")
+                        && ((PsiMethodCallExpression) qualifier).getArgumentList().getExpressions().length == 0)) {
+                    PsiElement r = findSameQualifier(thenStatement, qualifier);
+                    if (r != null) {
+                        return new ShortElvisExpression(element, element.getTextRange(),
+                                getExpression(element.getCondition(), document, true),
+                                getExpression(thenStatement, document, true),
+                                Collections.singletonList(r.getTextRange()));
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static PsiElement findSameQualifier(PsiElement element, PsiElement qualifier) {
+        if (element instanceof PsiStatement && element.getFirstChild() != null) {
+            return findSameQualifier(element.getFirstChild(), qualifier);
+        }
+        if (equal(qualifier, element)) {
+            return element;
+        }
+        if (element instanceof PsiMethodCallExpression && ((PsiMethodCallExpression) element).getMethodExpression().getQualifierExpression() != null) {
+            return findSameQualifier(((PsiMethodCallExpression) element).getMethodExpression().getQualifierExpression(), qualifier);
+        }
+        if (element instanceof PsiReferenceExpression && ((PsiReferenceExpression) element).getQualifierExpression() != null) {
+            return findSameQualifier(((PsiReferenceExpression) element).getQualifierExpression(),
+                    qualifier);
+        }
+        return null;
+    }
+
+    private static boolean equal(PsiElement e1, PsiElement e2) {
+        if (e2 instanceof PsiReferenceExpression && e1 instanceof PsiReferenceExpression) {
+            return ((PsiReferenceExpression) e2).getReferenceName().equals(((PsiReferenceExpression)e1).getReferenceName())
+                    && ResolveMemo.isReferenceTo((PsiReferenceExpression) e2, ResolveMemo.resolve((PsiReferenceExpression) e1));
+        } else if (e2 instanceof PsiMethodCallExpression && e1 instanceof PsiMethodCallExpression) {
+            return equal(((PsiMethodCallExpression) e2).getMethodExpression(),
+                    ((PsiMethodCallExpression) e1).getMethodExpression())
+                    && equal(((PsiMethodCallExpression) e2).getMethodExpression().getQualifierExpression(),
+                    ((PsiMethodCallExpression) e1).getMethodExpression().getQualifierExpression());
+        }
+        return false;
+    }
+}
@@ -46,7 +46,7 @@ public class InterpolatedString extends Expression implements ConcatenationExpre
                 && operands.stream().allMatch(o -> o.getTextRange() != null);
     }
 
-    protected static Set<String> supportedTokens = new HashSet<String>() {
+    protected static final Set<String> supportedTokens = Collections.unmodifiableSet(new HashSet<String>() {
         {
             add(".");
             add(";");
@@ -55,12 +55,11 @@ public class InterpolatedString extends Expression implements ConcatenationExpre
             add("(");
             add(" ");
         }
-    };
+    });
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(InterpolatedString.class.getName());
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
         final String[] buf = {""};
         if (!(operands.get(0) instanceof StringLiteral)) {
             TextRange range = TextRange.create(operands.get(0).getTextRange().getStartOffset() - 1,
@@ -68,14 +67,14 @@ public class InterpolatedString extends Expression implements ConcatenationExpre
             String token = document.getText(range);
             if (supportedTokens.contains(token)) {
                 if (operands.get(0) instanceof Variable) {
-                    descriptors.add(new FoldingDescriptor(element.getNode(), range, group) {
+                    sink.add(new FoldingDescriptor(element.getNode(), range, group) {
                         @Override
                         public String getPlaceholderText() {
                             return token + "\"$";
                         }
                     });
                 } else {
-                    descriptors.add(new FoldingDescriptor(element.getNode(), range, group) {
+                    sink.add(new FoldingDescriptor(element.getNode(), range, group) {
                         @Override
                         public String getPlaceholderText() {
                             return token + "\"${";
@@ -84,7 +83,7 @@ public class InterpolatedString extends Expression implements ConcatenationExpre
                     buf[0] = "}";
                 }
             } else {
-                descriptors.add(new FoldingDescriptor(element.getNode(),
+                sink.add(new FoldingDescriptor(element.getNode(),
                         TextRange.create(operands.get(0).getTextRange().getStartOffset(),
                                 operands.get(0).getTextRange().getEndOffset()), group) {
                     @Nullable
@@ -106,23 +105,23 @@ public class InterpolatedString extends Expression implements ConcatenationExpre
             int e = operands.get(i + 1) instanceof StringLiteral
                     ? operands.get(i + 1).getTextRange().getStartOffset() + 1
                     : operands.get(i + 1).getTextRange().getStartOffset();
-            int fI = i;
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            StringBuilder sb = new StringBuilder().append(buf[0]);
+            if (!(operands.get(i + 1) instanceof StringLiteral)) {
+                sb.append("$");
+            }
+            if (!(operands.get(i + 1) instanceof Variable) && !(operands.get(i + 1) instanceof StringLiteral)) {
+                sb.append("{");
+                buf[0] = "}";
+            } else {
+                buf[0] = "";
+            }
+            String placeholder = sb.toString();
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(s, e), group) {
                 @Nullable
                 @Override
                 public String getPlaceholderText() {
-                    StringBuilder sb = new StringBuilder().append(buf[0]);
-                    if (!(operands.get(fI + 1) instanceof StringLiteral)) {
-                        sb.append("$");
-                    }
-                    if (!(operands.get(fI + 1) instanceof Variable) && !(operands.get(fI + 1) instanceof StringLiteral)) {
-                        sb.append("{");
-                        buf[0] = "}";
-                    } else {
-                        buf[0] = "";
-                    }
-                    return sb.toString();
+                    return placeholder;
                 }
             });
         }
@@ -138,28 +137,28 @@ public class InterpolatedString extends Expression implements ConcatenationExpre
             String token = document.getText(range);
             if (supportedTokens.contains(token)) {
                 if (operands.get(operands.size() - 1) instanceof Variable) {
-                    descriptors.add(new FoldingDescriptor(element.getNode(),
+                    sink.add(new FoldingDescriptor(element.getNode(),
                             TextRange.create(s, e), group) {
                         @Override
                         public String getPlaceholderText() {
                             return "$";
                         }
                     });
-                    descriptors.add(new FoldingDescriptor(element.getNode(), range, group) {
+                    sink.add(new FoldingDescriptor(element.getNode(), range, group) {
                         @Override
                         public String getPlaceholderText() {
                             return "\"" + token;
                         }
                     });
                 } else {
-                    descriptors.add(new FoldingDescriptor(element.getNode(),
+                    sink.add(new FoldingDescriptor(element.getNode(),
                             TextRange.create(s, e), group) {
                         @Override
                         public String getPlaceholderText() {
                             return "${";
                         }
                     });
-                    descriptors.add(new FoldingDescriptor(element.getNode(), range, group) {
+                    sink.add(new FoldingDescriptor(element.getNode(), range, group) {
                         @Override
                         public String getPlaceholderText() {
                             return "}\"" + token;
@@ -167,7 +166,7 @@ public class InterpolatedString extends Expression implements ConcatenationExpre
                     });
                 }
             } else {
-                descriptors.add(new FoldingDescriptor(element.getNode(),
+                sink.add(new FoldingDescriptor(element.getNode(),
                         TextRange.create(operands.get(operands.size() - 1).getTextRange().getStartOffset(),
                                 operands.get(operands.size() - 1).getTextRange().getEndOffset()), group) {
                     @Nullable
@@ -180,9 +179,8 @@ public class InterpolatedString extends Expression implements ConcatenationExpre
         }
         for (Expression operand : operands) {
             if (operand.supportsFoldRegions(document, false)) {
-                Collections.addAll(descriptors, operand.buildFoldRegions(operand.getElement(), document));
+                operand.buildFoldRegions(operand.getElement(), document, sink);
             }
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
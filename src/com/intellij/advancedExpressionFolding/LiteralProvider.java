@@ -0,0 +1,19 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class LiteralProvider extends AdvancedExpressionFoldingProvider<PsiLiteralExpression> implements DumbAware {
+    public LiteralProvider() {
+        super(PsiLiteralExpression.class, "Literals");
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiLiteralExpression element, @Nullable Document document, boolean synthetic) {
+        return AdvancedExpressionFoldingBuilder.getLiteralExpression(element);
+    }
+}
@@ -0,0 +1,437 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class MethodCallProvider extends AdvancedExpressionFoldingProvider<PsiMethodCallExpression> {
+    private static final Set<String> supportedMethods = Collections.unmodifiableSet(new HashSet<String>() {
+        {
+            add("add");
+            add("multiply");
+            add("divide");
+            add("subtract");
+            add("remainder");
+            add("scaleByPowerOfTen");
+            add("pow");
+            add("min");
+            add("max");
+            add("negate");
+            add("plus");
+            add("abs");
+            add("valueOf");
+            add("equals");
+            add("and");
+            add("gcd");
+            add("not");
+            add("or");
+            add("shiftLeft");
+            add("shiftRight");
+            add("signum");
+            add("xor");
+            add("andNot");
+            add("mod");
+            add("modInverse");
+            add("modPow");
+            add("acos");
+            add("asin");
+            add("atan");
+            add("atan2");
+            add("cbrt");
+            add("ceil");
+            add("cos");
+            add("cosh");
+            add("floor");
+            add("log");
+            add("log10");
+            add("log1p");
+            add("random");
+            add("rint");
+            add("round");
+            add("sin");
+            add("sinh");
+            add("sqrt");
+            add("tan");
+            add("tanh");
+            add("toDegrees");
+            add("toRadians");
+            add("ulp");
+            add("hypot");
+            add("exp");
+            add("expm1");
+            add("append");
+            add("substring");
+            add("subList");
+            add("contains");
+            add("containsKey");
+            add("get");
+            add("isPresent");
+            add("charAt");
+            add("put");
+            add("set");
+            add("asList");
+            add("singletonList");
+            add("addAll");
+            add("removeAll");
+            add("remove");
+        }
+    });
+
+    public MethodCallProvider() {
+        super(PsiMethodCallExpression.class, "Math, BigDecimal, String and collection method calls");
+    }
+
+    @Nullable
+    @Override
+    public Set<String> getMethodNames() {
+        return supportedMethods;
+    }
+
+    @Override
+    public boolean isResolveCandidate(@NotNull PsiMethodCallExpression call) {
+        return supportedMethods.contains(call.getMethodExpression().getReferenceName());
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiMethodCallExpression element, @Nullable Document document, boolean synthetic) {
+        return getMethodCallExpression(element, document);
+    }
+
+    @Nullable
+    private static Expression getMethodCallExpression(PsiMethodCallExpression element, @Nullable Document document) {
+        PsiReferenceExpression referenceExpression = element.getMethodExpression();
+        Optional<PsiElement> identifier = Stream.of(referenceExpression.getChildren())
+                .filter(c -> c instanceof PsiIdentifier).findAny();
+        if (identifier.isPresent() && supportedMethods.contains(identifier.get().getText())) {
+            PsiMethod method = (PsiMethod) ResolveMemo.resolve(referenceExpression);
+            if (method != null) {
+                PsiClass psiClass = method.getContainingClass();
+                if (psiClass != null && psiClass.getQualifiedName() != null) {
+                    ClassFamily family = ClassFamily.of(psiClass);
+                    if ((family.isSupported() || AdvancedExpressionFoldingBuilder.unsupportedClassesMethodsExceptions.contains(method.getName()))
+                            && element.getMethodExpression().getQualifierExpression() != null) {
+                        PsiExpression qualifier = element
+                                .getMethodExpression().getQualifierExpression();
+                        Expression qualifierExpression = getExpression(qualifier, document, true);
+                        if (qualifierExpression != null) {
+                            String methodName = identifier.get().getText();
+                            if (methodName.equals("asList") || methodName.equals("singletonList")) {
+                                if (!methodName.equals("asList") ||
+                                        element.getArgumentList().getExpressions().length != 1 ||
+                                        !(element.getArgumentList().getExpressions()[0].getType() instanceof PsiArrayType)) {
+                                    return new ListLiteral(element, element.getTextRange(),
+                                            Stream.of(element.getArgumentList().getExpressions())
+                                                    .map(e -> getExpression(e, document, true)).collect(
+                                                    Collectors.toList()));
+                                }
+                            } else if (element.getArgumentList().getExpressions().length == 1) {
+                                PsiExpression argument = element.getArgumentList().getExpressions()[0];
+                                Expression argumentExpression = getExpression(argument, document, true);
+                                if (argumentExpression != null) {
+                                    switch (methodName) {
+                                        case "add":
+                                            if (family == ClassFamily.COLLECTION) {
+                                                return new AddAssignForCollection(element, element.getTextRange(), Arrays.asList(qualifierExpression, argumentExpression));
+                                            }
+                                            return new Add(element, element.getTextRange(), Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "remove":
+                                            if (method.getParameterList().getParameters().length == 1
+                                                    && !method.getParameterList().getParameters()[0].getType().equals(PsiType.INT)) {
+                                                return new RemoveAssignForCollection(element, element.getTextRange(), Arrays.asList(qualifierExpression, argumentExpression));
+                                            }
+                                        case "subtract":
+                                            return new Subtract(element, element.getTextRange(),
+                                                    Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "multiply":
+                                            return new Multiply(element, element.getTextRange(),
+                                                    Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "divide":
+                                            return new Divide(element, element.getTextRange(),
+                                                    Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "remainder":
+                                            return new Remainder(element, element.getTextRange(),
+                                                    Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "mod":
+                                            return new Remainder(element, element.getTextRange(),
+                                                    Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "scaleByPowerOfTen":
+                                            return new Multiply(element, element.getTextRange(),
+                                                    Arrays.asList(qualifierExpression, new Pow(element, null, Arrays
+                                                            .asList(new NumberLiteral(element, null, 10),
+                                                                    argumentExpression))));
+                                        case "andNot":
+                                            return new And(element, element.getTextRange(),
+                                                    Arrays.asList(qualifierExpression, new Not(element, null,
+                                                            Collections.singletonList(argumentExpression))));
+                                        case "modInverse":
+                                            return new Remainder(element, element.getTextRange(),
+                                                    Arrays.asList(new Pow(element, null,
+                                                                    Arrays.asList(qualifierExpression, new NumberLiteral(element, null, -1))),
+                                                            argumentExpression));
+                                        case "pow":
+                                            return new Pow(element, element.getTextRange(), Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "min":
+                                            return new Min(element, element.getTextRange(), Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "max":
+                                            return new Max(element, element.getTextRange(), Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "gcd":
+                                            return new Gcd(element, element.getTextRange(), Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "and":
+                                            return new And(element, element.getTextRange(), Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "or":
+                                            return new Or(element, element.getTextRange(), Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "xor":
+                                            return new Xor(element, element.getTextRange(), Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "shiftLeft":
+                                            return new ShiftLeft(element, element.getTextRange(),
+                                                    Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "shiftRight":
+                                            return new ShiftRight(element, element.getTextRange(),
+                                                    Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "equals":
+                                            return new Equal(element, element.getTextRange(), Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "append":
+                                            return new Append(element, element.getTextRange(),
+                                                    Arrays.asList(qualifierExpression, argumentExpression));
+                                        /*case "contains":
+                                        case "containsKey":
+                                            return new Contains(element.getTextRange(), qualifierExpression, argumentExpression);*/
+                                        case "charAt":
+                                            return new Get(element, element.getTextRange(), qualifierExpression,
+                                                    argumentExpression, Get.Style.NORMAL);
+                                        case "get":
+                                            if (argumentExpression instanceof NumberLiteral && ((NumberLiteral) argumentExpression).getNumber().equals(0)) {
+                                                return new Get(element, element.getTextRange(), qualifierExpression,
+                                                        argumentExpression, Get.Style.FIRST);
+                                            } else if (argument instanceof PsiBinaryExpression) {
+                                                PsiBinaryExpression a2b = (PsiBinaryExpression) argument;
+                                                NumberLiteral position = AdvancedExpressionFoldingBuilder.getSlicePosition(element, qualifierExpression, a2b, document);
+                                                if (position != null && position.getNumber().equals(-1)) {
+                                                    return new Get(element, element.getTextRange(), qualifierExpression,
+                                                            argumentExpression, Get.Style.LAST);
+                                                }
+                                            }
+                                            return new Get(element, element.getTextRange(), qualifierExpression,
+                                                    argumentExpression, Get.Style.NORMAL);
+                                        case "subList":
+                                        case "substring":
+                                            if (argument instanceof PsiBinaryExpression) {
+                                                NumberLiteral position = AdvancedExpressionFoldingBuilder.getSlicePosition(element,
+                                                        qualifierExpression, (PsiBinaryExpression) argument, document);
+                                                if (position != null) {
+                                                    return new Slice(element, element.getTextRange(),
+                                                            Arrays.asList(qualifierExpression, position));
+                                                }
+                                            }
+                                            return new Slice(element, element.getTextRange(),
+                                                    Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "addAll":
+                                            return new AddAssignForCollection(element, element.getTextRange(), Arrays.asList(qualifierExpression, argumentExpression));
+                                        case "removeAll":
+                                            return new RemoveAssignForCollection(element, element.getTextRange(), Arrays.asList(qualifierExpression, argumentExpression));
+                                    }
+                                }
+                            } else if (element.getArgumentList().getExpressions().length == 0) {
+                                switch (methodName) {
+                                    case "plus":
+                                        return qualifierExpression;
+                                    case "negate":
+                                        return new Negate(element, element.getTextRange(), Collections.singletonList(qualifierExpression));
+                                    case "not":
+                                        return new Not(element, element.getTextRange(), Collections.singletonList(qualifierExpression));
+                                    case "abs":
+                                        return new Abs(element, element.getTextRange(), Collections.singletonList(qualifierExpression));
+                                    case "signum":
+                                        return new Signum(element, element.getTextRange(), Collections.singletonList(qualifierExpression));
+                                    /*case "get":
+                                        return new AssertNotNullExpression(element.getTextRange(),
+                                                qualifierExpression);*/
+                                    /*case "isPresent":
+                                        return new NotNullExpression(element.getTextRange(),
+                                                qualifierExpression);*/
+                                }
+                            } else if (element.getArgumentList().getExpressions().length == 2) {
+                                PsiExpression a1 = element.getArgumentList().getExpressions()[0];
+                                PsiExpression a2 = element.getArgumentList().getExpressions()[1];
+                                Expression a1Expression = getExpression(a1, document, true);
+                                if (a1Expression != null) {
+                                    Expression a2Expression = getExpression(a2, document, true);
+                                    if (a2Expression != null) {
+                                        switch (methodName) {
+                                            case "put":
+                                            case "set":
+                                                return new Put(element, element.getTextRange(), qualifierExpression, a1Expression, a2Expression);
+                                            case "atan2":
+                                                return new Atan2(element, element.getTextRange(), Arrays.asList(qualifierExpression, a1Expression,
+                                                        a2Expression));
+                                            case "modPow":
+                                                return new Remainder(element, element.getTextRange(),
+                                                        Arrays.asList(new Pow(element, null,
+                                                                        Arrays.asList(qualifierExpression, a1Expression)),
+                                                                a2Expression));
+                                            case "substring":
+                                            case "subList":
+                                                if (a1 instanceof PsiBinaryExpression) {
+                                                    NumberLiteral p1 = AdvancedExpressionFoldingBuilder.getSlicePosition(element, qualifierExpression, (PsiBinaryExpression) a1, document);
+                                                    if (p1 != null) {
+                                                        if (a2Expression instanceof NumberLiteral) {
+                                                            return new Slice(element, element.getTextRange(), Arrays.asList(qualifierExpression,
+                                                                    p1, a2Expression));
+                                                        } else if (a2 instanceof PsiBinaryExpression) {
+                                                            NumberLiteral p2 = AdvancedExpressionFoldingBuilder.getSlicePosition(element, qualifierExpression, (PsiBinaryExpression) a2, document);
+                                                            if (p2 != null) {
+                                                                return new Slice(element, element.getTextRange(),
+                                                                        Arrays.asList(qualifierExpression, p1, p2));
+                                                            }
+                                                        } else if (a2 instanceof PsiMethodCallExpression) {
+                                                            PsiMethodCallExpression a2m = (PsiMethodCallExpression) a2;
+                                                            PsiReferenceExpression a2me = a2m.getMethodExpression();
+                                                            Optional<PsiElement> a2i = Stream.of(a2me.getChildren())
+                                                                    .filter(c -> c instanceof PsiIdentifier).findAny();
+                                                            if (a2i.isPresent() && (a2i.get().getText().equals("length") || a2i.get()
+                                                                    .getText().equals("size"))) {
+                                                                Expression a2qe = getExpression(a2me.getQualifierExpression(), document, true);
+                                                                if (a2qe != null && a2qe.equals(qualifierExpression)) {
+                                                                    return new Slice(element, element.getTextRange(), Arrays.asList(qualifierExpression, p1));
+                                                                }
+                                                            }
+                                                        }
+                                                    }
+                                                }
+                                                if (a2 instanceof PsiBinaryExpression)  {
+                                                    PsiBinaryExpression a2b = (PsiBinaryExpression) a2;
+                                                    NumberLiteral position = AdvancedExpressionFoldingBuilder.getSlicePosition(element, qualifierExpression, a2b, document);
+                                                    if (position != null) {
+                                                        return new Slice(element, element.getTextRange(), Arrays.asList(qualifierExpression, a1Expression,
+                                                                position));
+                                                    }
+                                                } else if (a2 instanceof PsiMethodCallExpression) {
+                                                    PsiMethodCallExpression a2m = (PsiMethodCallExpression) a2;
+                                                    PsiReferenceExpression a2me = a2m.getMethodExpression();
+                                                    Optional<PsiElement> a2i = Stream.of(a2me.getChildren())
+                                                            .filter(c -> c instanceof PsiIdentifier).findAny();
+                                                    if (a2i.isPresent() && (a2i.get().getText().equals("length") || a2i.get()
+                                                            .getText().equals("size"))) {
+                                                        Expression a2qe = getExpression(a2me.getQualifierExpression(), document, true);
+                                                        if (a2qe != null && a2qe.equals(qualifierExpression)) {
+                                                            return new Slice(element, element.getTextRange(), Arrays.asList(qualifierExpression, a1Expression));
+                                                        }
+                                                    }
+                                                }
+                                                return new Slice(element, element.getTextRange(), Arrays.asList(qualifierExpression, a1Expression, a2Expression));
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                        if (element.getArgumentList().getExpressions().length == 1) {
+                            PsiExpression argument = element.getArgumentList().getExpressions()[0];
+                            if (method.getName().equals("valueOf") && argument instanceof PsiLiteralExpression) {
+                                return AdvancedExpressionFoldingBuilder.getConstructorExpression(element, argument,
+                                        psiClass.getQualifiedName());
+                            } else if (method.getName().equals("valueOf") && argument instanceof PsiReferenceExpression) {
+                                return AdvancedExpressionFoldingBuilder.getReferenceExpression((PsiReferenceExpression) argument);
+                            } else {
+                                Expression argumentExpression = getExpression(argument, document, true);
+                                if (argumentExpression != null) {
+                                    switch (method.getName()) {
+                                        case "abs":
+                                            return new Abs(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "acos":
+                                            return new Acos(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "asin":
+                                            return new Asin(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "atan":
+                                            return new Atan(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "cbrt":
+                                            return new Cbrt(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "ceil":
+                                            return new Ceil(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "cos":
+                                            return new Cos(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "cosh":
+                                            return new Cosh(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "floor":
+                                            return new Floor(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "log":
+                                            return new Log(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "log1p":
+                                            return new Log(element, element.getTextRange(), Collections.singletonList(
+                                                    new Add(element, null, Arrays.asList(argumentExpression, new NumberLiteral(element, null, 1)))));
+                                        case "log10":
+                                            return new Log10(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "rint":
+                                            return new Rint(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "round":
+                                            return new Round(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "sin":
+                                            return new Sin(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "sinh":
+                                            return new Sinh(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "Sqrt":
+                                            return new Sqrt(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "tan":
+                                            return new Tan(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "tanh":
+                                            return new Tanh(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "toDegrees":
+                                            return new ToDegrees(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "toRadians":
+                                            return new ToRadians(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "ulp":
+                                            return new Ulp(element, element.getTextRange(), Collections.singletonList(argumentExpression));
+                                        case "exp":
+                                            return new Pow(element, element.getTextRange(),
+                                                    Arrays.asList(new Variable(element, null, (String) AdvancedExpressionFoldingBuilder.supportedConstants.get("E")),
+                                                            argumentExpression));
+                                        case "expm1":
+                                            return new Subtract(element, element.getTextRange(), Arrays.asList(new Pow(element, null, Arrays
+                                                    .asList(new Variable(element, null, (String) AdvancedExpressionFoldingBuilder.supportedConstants.get("E")),
+                                                            argumentExpression)), new NumberLiteral(element, null, 1)));
+                                    }
+                                }
+                            }
+                        } else if (element.getArgumentList().getExpressions().length == 2) {
+                            PsiExpression a1 = element.getArgumentList().getExpressions()[0];
+                            Expression a1Expression = getExpression(a1, document, true);
+                            PsiExpression a2 = element.getArgumentList().getExpressions()[1];
+                            Expression a2Expression = getExpression(a2, document, true);
+                            if (a1Expression != null && a2Expression != null) {
+                                String methodName = identifier.get().getText();
+                                switch (methodName) {
+                                    case "min":
+                                        return new Min(element, element.getTextRange(), Arrays.asList(a1Expression, a2Expression));
+                                    case "max":
+                                        return new Max(element, element.getTextRange(), Arrays.asList(a1Expression, a2Expression));
+                                    case "pow":
+                                        return new Pow(element, element.getTextRange(), Arrays.asList(a1Expression, a2Expression));
+                                    case "hypot":
+                                        return new Add(element, element.getTextRange(), Collections.singletonList(new Sqrt(element, null, Collections.singletonList(
+                                                new Add(element, null, Arrays
+                                                        .asList(new Pow(element, null, Arrays.asList(a1Expression, new NumberLiteral(element, null, 2))),
+                                                                new Pow(element, null, Arrays.asList(a2Expression, new NumberLiteral(element, null, 2)))))))));
+                                    case "addAll":
+                                        return new AddAssignForCollection(element, element.getTextRange(), Arrays.asList(a1Expression, a2Expression));
+                                    case "equals":
+                                        return new Equal(element, element.getTextRange(), Arrays.asList(a1Expression, a2Expression));
+                                }
+                            }
+                        } else if (element.getArgumentList().getExpressions().length == 0) {
+                            switch (method.getName()) {
+                                case "random":
+                                    return new Random(element, element.getTextRange(), Collections.emptyList());
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
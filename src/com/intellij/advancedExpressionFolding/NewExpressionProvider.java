@@ -0,0 +1,51 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class NewExpressionProvider extends AdvancedExpressionFoldingProvider<PsiNewExpression> {
+    public NewExpressionProvider() {
+        super(PsiNewExpression.class, "Constructor calls and array literals");
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiNewExpression element, @Nullable Document document, boolean synthetic) {
+        return getNewExpression(element, document);
+    }
+
+    @Nullable
+    private static Expression getNewExpression(PsiNewExpression element, @Nullable Document document) {
+        if (ClassFamily.of(element.getType()).isSupported()) {
+            if (element.getArgumentList() != null && element.getArgumentList().getExpressions().length == 1) {
+                if (element.getArgumentList().getExpressions()[0] instanceof PsiLiteralExpression){
+                    return AdvancedExpressionFoldingBuilder.getConstructorExpression(element, element.getArgumentList().getExpressions()[0],
+                            AdvancedExpressionFoldingBuilder.eraseGenerics(element.getType().getCanonicalText()));
+                } else if (element.getArgumentList().getExpressions()[0] instanceof PsiReferenceExpression) {
+                    return AdvancedExpressionFoldingBuilder.getReferenceExpression(
+                            (PsiReferenceExpression) element.getArgumentList().getExpressions()[0], true);
+                }
+            } else if (element.getArgumentList() != null && element.getArgumentList().getExpressions().length == 0) {
+                switch (AdvancedExpressionFoldingBuilder.eraseGenerics(element.getType().getCanonicalText())) {
+                    case "java.lang.String":
+                    case "java.lang.StringBuilder":
+                        return new StringLiteral(element, element.getTextRange(), "");
+                    case "java.util.ArrayList":
+                        return new ListLiteral(element, element.getTextRange(), Collections.emptyList());
+                }
+            }
+        }
+        if (element.getType() != null && element.getArrayInitializer() != null) {
+            return new ArrayLiteral(element, element.getTextRange(),
+                    Arrays.stream(element.getArrayInitializer().getInitializers())
+                            .map(i -> getExpression(i, document, true)).collect(
+                            Collectors.toList()));
+        }
+        return null;
+    }
+}
@@ -7,9 +7,6 @@ import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
-
 public class NotNullExpression extends Expression implements CheckExpression {
     private final Expression object;
 
@@ -29,11 +26,11 @@ public class NotNullExpression extends Expression implements CheckExpression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@org.jetbrains.annotations.NotNull PsiElement element,
-                                                @org.jetbrains.annotations.NotNull Document document) {
+    public void buildFoldRegions(@org.jetbrains.annotations.NotNull PsiElement element,
+                                 @org.jetbrains.annotations.NotNull Document document,
+                                 @org.jetbrains.annotations.NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(NotNullExpression.class.getName());
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 object.getTextRange().getEndOffset() < getTextRange().getEndOffset()
                         ? TextRange.create(object.getTextRange().getEndOffset(), getTextRange().getEndOffset())
                         : TextRange.create(getTextRange().getStartOffset(), object.getTextRange().getStartOffset()), group) {
@@ -44,8 +41,7 @@ public class NotNullExpression extends Expression implements CheckExpression {
             }
         });
         if (object.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, object.buildFoldRegions(object.getElement(), document));
+            object.buildFoldRegions(object.getElement(), document, sink);
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
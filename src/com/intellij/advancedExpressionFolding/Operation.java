@@ -9,7 +9,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -148,12 +147,11 @@ public abstract class Operation extends Expression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(getClass().getName());
-        List<FoldingDescriptor> descriptors = new ArrayList<>();
         int offset = getTextRange().getStartOffset();
         if (operands.get(0).getTextRange().getStartOffset() > offset) {
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(offset, operands.get(0).getTextRange().getStartOffset()), group) {
                 @Nullable
                 @Override
@@ -164,7 +162,7 @@ public abstract class Operation extends Expression {
         }
         offset = operands.get(0).getTextRange().getEndOffset();
         for (int i = 1; i < operands.size(); i++) {
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(offset, operands.get(i).getTextRange().getStartOffset()), group) {
                 @Nullable
                 @Override
@@ -175,7 +173,7 @@ public abstract class Operation extends Expression {
             offset = operands.get(i).getTextRange().getEndOffset();
         }
         if (offset < getTextRange().getEndOffset()) {
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(offset, getTextRange().getEndOffset()), group) {
                 @Nullable
                 @Override
@@ -186,10 +184,9 @@ public abstract class Operation extends Expression {
         }
         for (Expression operand : operands) {
             if (operand.supportsFoldRegions(document, false)) {
-                Collections.addAll(descriptors, operand.buildFoldRegions(operand.getElement(), document));
+                operand.buildFoldRegions(operand.getElement(), document, sink);
             }
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 
     @Override
@@ -0,0 +1,33 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class ParenthesizedProvider extends AdvancedExpressionFoldingProvider<PsiParenthesizedExpression> implements DumbAware {
+    public ParenthesizedProvider() {
+        super(PsiParenthesizedExpression.class, "Parenthesized expressions");
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiParenthesizedExpression element, @Nullable Document document, boolean synthetic) {
+        return getParenthesizedExpression(element, document, synthetic);
+    }
+
+    private static Expression getParenthesizedExpression(PsiParenthesizedExpression element, @Nullable Document document,
+                                                         boolean synthetic) {
+        if (element.getExpression() instanceof PsiTypeCastExpression) {
+            TypeCast typeCast = AdvancedExpressionFoldingBuilder.getTypeCastExpression((PsiTypeCastExpression) element.getExpression(), document);
+            if (typeCast != null) {
+                return new TypeCast(element, element.getTextRange(), typeCast.getObject());
+            }
+        }
+        if (element.getExpression() != null) {
+            return getExpression(element.getExpression(), document, synthetic);
+        }
+        return null;
+    }
+}
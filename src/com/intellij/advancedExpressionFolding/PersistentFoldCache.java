@@ -0,0 +1,402 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.ide.plugins.IdeaPluginDescriptor;
+import com.intellij.ide.plugins.PluginManager;
+import com.intellij.ide.plugins.PluginManagerCore;
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.folding.FoldingDescriptor;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.FoldingGroup;
+import com.intellij.openapi.extensions.PluginId;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.PersistentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the fold regions of Java files on disk, so a file reopened after a restart gets all of its regions from the
+ * quick folding pass without resolving anything. A stored entry is used once per session and only if the file's
+ * content, the folding settings and the plugin version are the same as when it was stored.
+ * <p>
+ * The folding passes only remember their last complete result in memory; it is written when the file is closed, and
+ * only if it differs from the stored entry, so editing a file costs no hashing or disk writes.
+ */
+public class PersistentFoldCache implements Disposable {
+    private static final Logger LOG = Logger.getInstance(PersistentFoldCache.class);
+    /**
+     * The version of the storage format; the plugin version is a part of every entry.
+     */
+    private static final int VERSION = 2;
+    private static final Key<Boolean> RESTORE_ATTEMPTED_KEY = Key.create("AdvancedExpressionFolding.restoreAttempted");
+    private static final Key<Pair<Long, Integer>> STORED_KEY = Key.create("AdvancedExpressionFolding.storedFolds");
+    private static final Key<Boolean> COLLAPSED_KEY = Key.create("AdvancedExpressionFolding.restoredCollapsed");
+    private static final Key<Pass> LAST_PASS_KEY = Key.create("AdvancedExpressionFolding.lastCompletePass");
+
+    private final File file = new File(new File(PathManager.getSystemPath(), "advancedExpressionFolding"),
+            "folds.v" + VERSION);
+    private final String pluginVersion = getPluginVersion();
+    private PersistentHashMap<String, Entry> map;
+    private boolean broken;
+
+    @NotNull
+    public static PersistentFoldCache getInstance() {
+        return ServiceManager.getService(PersistentFoldCache.class);
+    }
+
+    /**
+     * @return the stored regions of the file, or null if there are none or they are out of date
+     */
+    @Nullable
+    FoldingDescriptor[] restore(@NotNull PsiFile psiFile, @NotNull Document document) {
+        VirtualFile virtualFile = psiFile.getVirtualFile();
+        if (virtualFile == null || virtualFile.getUserData(RESTORE_ATTEMPTED_KEY) != null) {
+            return null;
+        }
+        virtualFile.putUserData(RESTORE_ATTEMPTED_KEY, Boolean.TRUE);
+        Entry entry = get(virtualFile.getUrl());
+        int settingsHash = AdvancedExpressionFoldingSettings.getInstance().getStateHash();
+        if (entry == null || !isUpToDate(entry, hash(document), settingsHash)) {
+            return null;
+        }
+        // All nodes are found before any of them is marked, so a missing one leaves no stale collapsed state behind
+        ASTNode[] nodes = new ASTNode[entry.regions.length];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = findNode(psiFile, entry.regions[i]);
+            if (nodes[i] == null) {
+                return null;
+            }
+        }
+        FoldingGroup[] groups = new FoldingGroup[entry.groups.length];
+        FoldingDescriptor[] descriptors = new FoldingDescriptor[entry.regions.length];
+        for (int i = 0; i < entry.regions.length; i++) {
+            Region region = entry.regions[i];
+            ASTNode node = nodes[i];
+            FoldingGroup group = null;
+            if (region.group >= 0) {
+                if (groups[region.group] == null) {
+                    groups[region.group] = FoldingGroup.newGroup(entry.groups[region.group]);
+                }
+                group = groups[region.group];
+            }
+            node.putUserData(COLLAPSED_KEY, region.collapsed);
+            descriptors[i] = new FoldingDescriptor(node, TextRange.create(region.start, region.end), group) {
+                @Nullable
+                @Override
+                public String getPlaceholderText() {
+                    return region.placeholder;
+                }
+            };
+        }
+        return descriptors;
+    }
+
+    /**
+     * Remembers the regions computed by a complete full pass of the file, to be stored when the file is closed. Only
+     * their offsets, placeholders and collapsed states are kept, not the descriptors with their AST nodes.
+     */
+    static void rememberPass(@NotNull PsiFile psiFile, @NotNull Document document,
+                             @NotNull List<FoldingDescriptor> descriptors, @NotNull Predicate<ASTNode> collapsedByDefault) {
+        long modificationStamp = document.getModificationStamp();
+        int settingsHash = AdvancedExpressionFoldingSettings.getInstance().getStateHash();
+        Pass remembered = psiFile.getUserData(LAST_PASS_KEY);
+        if (remembered != null && remembered.modificationStamp == modificationStamp
+                && remembered.settingsHash == settingsHash) {
+            return;
+        }
+        Map<FoldingGroup, Integer> groupIndices = new LinkedHashMap<>();
+        Region[] regions = new Region[descriptors.size()];
+        for (int i = 0; i < regions.length; i++) {
+            FoldingDescriptor descriptor = descriptors.get(i);
+            ASTNode node = descriptor.getElement();
+            FoldingGroup group = descriptor.getGroup();
+            int groupIndex = -1;
+            if (group != null) {
+                groupIndex = groupIndices.computeIfAbsent(group, g -> groupIndices.size());
+            }
+            regions[i] = new Region(descriptor.getRange().getStartOffset(), descriptor.getRange().getEndOffset(),
+                    node.getStartOffset(), node.getStartOffset() + node.getTextLength(),
+                    node.getElementType().toString(), groupIndex, descriptor.getPlaceholderText(),
+                    collapsedByDefault.test(node));
+        }
+        String[] groups = new String[groupIndices.size()];
+        for (Map.Entry<FoldingGroup, Integer> groupIndex : groupIndices.entrySet()) {
+            groups[groupIndex.getValue()] = groupIndex.getKey().toString();
+        }
+        psiFile.putUserData(LAST_PASS_KEY, new Pass(modificationStamp, settingsHash, groups, regions));
+    }
+
+    /**
+     * Stores the regions remembered for the file, unless they are out of date or the same as the stored ones.
+     */
+    void store(@NotNull PsiFile psiFile, @NotNull Document document) {
+        Pass pass = psiFile.getUserData(LAST_PASS_KEY);
+        psiFile.putUserData(LAST_PASS_KEY, null);
+        VirtualFile virtualFile = psiFile.getVirtualFile();
+        if (pass == null || virtualFile == null || !virtualFile.isInLocalFileSystem()
+                || pass.modificationStamp != document.getModificationStamp()
+                || pass.settingsHash != AdvancedExpressionFoldingSettings.getInstance().getStateHash()) {
+            return;
+        }
+        Pair<Long, Integer> state = Pair.create(pass.modificationStamp, pass.settingsHash);
+        if (state.equals(virtualFile.getUserData(STORED_KEY))) {
+            return;
+        }
+        byte[] contentHash = hash(document);
+        Entry stored = get(virtualFile.getUrl());
+        if (stored != null && isUpToDate(stored, contentHash, pass.settingsHash)) {
+            virtualFile.putUserData(STORED_KEY, state);
+            return;
+        }
+        if (put(virtualFile.getUrl(), new Entry(contentHash, pass.settingsHash, pluginVersion, pass.groups, pass.regions))) {
+            virtualFile.putUserData(STORED_KEY, state);
+        }
+    }
+
+    private boolean isUpToDate(@NotNull Entry entry, @NotNull byte[] contentHash, int settingsHash) {
+        return entry.settingsHash == settingsHash && entry.pluginVersion.equals(pluginVersion)
+                && Arrays.equals(entry.contentHash, contentHash);
+    }
+
+    /**
+     * @return the collapsed state stored for a restored region of {@code node}, which is only used once
+     */
+    @Nullable
+    static Boolean consumeCollapsedByDefault(@NotNull ASTNode node) {
+        Boolean collapsed = node.getUserData(COLLAPSED_KEY);
+        if (collapsed != null) {
+            node.putUserData(COLLAPSED_KEY, null);
+        }
+        return collapsed;
+    }
+
+    @Nullable
+    private static ASTNode findNode(@NotNull PsiFile psiFile, @NotNull Region region) {
+        for (PsiElement element = psiFile.findElementAt(region.nodeStart); element != null; element = element.getParent()) {
+            TextRange range = element.getTextRange();
+            if (range.getStartOffset() != region.nodeStart || range.getEndOffset() > region.nodeEnd) {
+                return null;
+            }
+            ASTNode node = element.getNode();
+            if (range.getEndOffset() == region.nodeEnd && node != null
+                    && node.getElementType().toString().equals(region.nodeType)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    @NotNull
+    private static String getPluginVersion() {
+        PluginId id = PluginManagerCore.getPluginByClassName(PersistentFoldCache.class.getName());
+        IdeaPluginDescriptor plugin = id != null ? PluginManager.getPlugin(id) : null;
+        return plugin != null && plugin.getVersion() != null ? plugin.getVersion() : "";
+    }
+
+    @NotNull
+    private static byte[] hash(@NotNull Document document) {
+        try {
+            return MessageDigest.getInstance("SHA-1")
+                    .digest(document.getImmutableCharSequence().toString().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Nullable
+    private synchronized Entry get(@NotNull String url) {
+        PersistentHashMap<String, Entry> map = getMap();
+        if (map != null) {
+            try {
+                return map.get(url);
+            } catch (IOException e) {
+                handleError(e);
+            }
+        }
+        return null;
+    }
+
+    private synchronized boolean put(@NotNull String url, @NotNull Entry entry) {
+        PersistentHashMap<String, Entry> map = getMap();
+        if (map != null) {
+            try {
+                map.put(url, entry);
+                return true;
+            } catch (IOException e) {
+                handleError(e);
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private PersistentHashMap<String, Entry> getMap() {
+        if (map == null && !broken) {
+            try {
+                map = new PersistentHashMap<>(file, EnumeratorStringDescriptor.INSTANCE, new EntryExternalizer());
+            } catch (IOException e) {
+                LOG.info("Cannot open the fold cache, recreating it", e);
+                IOUtil.deleteAllFilesStartingWith(file);
+                try {
+                    map = new PersistentHashMap<>(file, EnumeratorStringDescriptor.INSTANCE, new EntryExternalizer());
+                } catch (IOException e1) {
+                    LOG.warn("Cannot create the fold cache", e1);
+                    broken = true;
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * A corrupted cache is dropped; the next access creates an empty one.
+     */
+    private void handleError(@NotNull IOException e) {
+        LOG.info("Fold cache is corrupted, dropping it", e);
+        close();
+        IOUtil.deleteAllFilesStartingWith(file);
+    }
+
+    private void close() {
+        if (map != null) {
+            try {
+                map.close();
+            } catch (IOException e) {
+                LOG.info(e);
+            }
+            map = null;
+        }
+    }
+
+    @Override
+    public synchronized void dispose() {
+        close();
+    }
+
+    private static class Pass {
+        private final long modificationStamp;
+        private final int settingsHash;
+        private final String[] groups;
+        private final Region[] regions;
+
+        Pass(long modificationStamp, int settingsHash, String[] groups, Region[] regions) {
+            this.modificationStamp = modificationStamp;
+            this.settingsHash = settingsHash;
+            this.groups = groups;
+            this.regions = regions;
+        }
+    }
+
+    private static class Entry {
+        private final byte[] contentHash;
+        private final int settingsHash;
+        private final String pluginVersion;
+        private final String[] groups;
+        private final Region[] regions;
+
+        Entry(byte[] contentHash, int settingsHash, String pluginVersion, String[] groups, Region[] regions) {
+            this.contentHash = contentHash;
+            this.settingsHash = settingsHash;
+            this.pluginVersion = pluginVersion;
+            this.groups = groups;
+            this.regions = regions;
+        }
+    }
+
+    private static class Region {
+        private final int start;
+        private final int end;
+        private final int nodeStart;
+        private final int nodeEnd;
+        private final String nodeType;
+        private final int group;
+        private final String placeholder;
+        private final boolean collapsed;
+
+        Region(int start, int end, int nodeStart, int nodeEnd, String nodeType, int group,
+               @Nullable String placeholder, boolean collapsed) {
+            this.start = start;
+            this.end = end;
+            this.nodeStart = nodeStart;
+            this.nodeEnd = nodeEnd;
+            this.nodeType = nodeType;
+            this.group = group;
+            this.placeholder = placeholder;
+            this.collapsed = collapsed;
+        }
+    }
+
+    private static class EntryExternalizer implements DataExternalizer<Entry> {
+        @Override
+        public void save(@NotNull DataOutput out, Entry entry) throws IOException {
+            DataInputOutputUtil.writeINT(out, entry.contentHash.length);
+            out.write(entry.contentHash);
+            out.writeInt(entry.settingsHash);
+            IOUtil.writeUTF(out, entry.pluginVersion);
+            DataInputOutputUtil.writeINT(out, entry.groups.length);
+            for (String group : entry.groups) {
+                IOUtil.writeUTF(out, group);
+            }
+            DataInputOutputUtil.writeINT(out, entry.regions.length);
+            for (Region region : entry.regions) {
+                DataInputOutputUtil.writeINT(out, region.start);
+                DataInputOutputUtil.writeINT(out, region.end);
+                DataInputOutputUtil.writeINT(out, region.nodeStart);
+                DataInputOutputUtil.writeINT(out, region.nodeEnd);
+                IOUtil.writeUTF(out, region.nodeType);
+                DataInputOutputUtil.writeINT(out, region.group + 1);
+                out.writeBoolean(region.placeholder != null);
+                if (region.placeholder != null) {
+                    IOUtil.writeUTF(out, region.placeholder);
+                }
+                out.writeBoolean(region.collapsed);
+            }
+        }
+
+        @Override
+        public Entry read(@NotNull DataInput in) throws IOException {
+            byte[] contentHash = new byte[DataInputOutputUtil.readINT(in)];
+            in.readFully(contentHash);
+            int settingsHash = in.readInt();
+            String pluginVersion = IOUtil.readUTF(in);
+            String[] groups = new String[DataInputOutputUtil.readINT(in)];
+            for (int i = 0; i < groups.length; i++) {
+                groups[i] = IOUtil.readUTF(in);
+            }
+            Region[] regions = new Region[DataInputOutputUtil.readINT(in)];
+            for (int i = 0; i < regions.length; i++) {
+                int start = DataInputOutputUtil.readINT(in);
+                int end = DataInputOutputUtil.readINT(in);
+                int nodeStart = DataInputOutputUtil.readINT(in);
+                int nodeEnd = DataInputOutputUtil.readINT(in);
+                String nodeType = IOUtil.readUTF(in);
+                int group = DataInputOutputUtil.readINT(in) - 1;
+                String placeholder = in.readBoolean() ? IOUtil.readUTF(in) : null;
+                regions[i] = new Region(start, end, nodeStart, nodeEnd, nodeType, group, placeholder, in.readBoolean());
+            }
+            return new Entry(contentHash, settingsHash, pluginVersion, groups, regions);
+        }
+    }
+}
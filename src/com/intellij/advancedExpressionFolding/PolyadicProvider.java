@@ -0,0 +1,160 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+public class PolyadicProvider extends AdvancedExpressionFoldingProvider<PsiPolyadicExpression> implements DumbAware {
+    private static final Set<String> supportedBinaryOperators = Collections.unmodifiableSet(new HashSet<String>() {
+        {
+            add("+");
+            add("-");
+            add("*");
+            add("/");
+        }
+    });
+
+    public PolyadicProvider() {
+        super(PsiPolyadicExpression.class, "Binary and polyadic expressions");
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiPolyadicExpression element, @Nullable Document document, boolean synthetic) {
+        return getPolyadicExpression(element, document);
+    }
+
+    private static Expression getPolyadicExpression(PsiPolyadicExpression element, @Nullable Document document) {
+        boolean add = true;
+        boolean string = false;
+        Expression[] operands = null;
+        for (int i = 0; i < element.getOperands().length - 1; i++) {
+            PsiExpression a = element.getOperands()[i];
+            PsiExpression b = element.getOperands()[i + 1];
+            PsiJavaToken token = element.getTokenBeforeOperand(b);
+            if (token != null) {
+                if ("&&".equals(token.getText())
+                        && a instanceof PsiBinaryExpression
+                        && b instanceof PsiBinaryExpression) {
+                    Expression twoBinaryExpression = getAndTwoBinaryExpressions(element,
+                            ((PsiBinaryExpression) a), ((PsiBinaryExpression) b), document);
+                    if (twoBinaryExpression != null) {
+                        return twoBinaryExpression;
+                    }
+                }
+                if (add && "+".equals(token.getText())) {
+                    if (operands == null) {
+                        operands = new Expression[element.getOperands().length];
+                    }
+                    operands[i] = getExpression(element.getOperands()[i], document, true);
+                    if (operands[i] instanceof StringLiteral) {
+                        string = true;
+                    }
+                } else {
+                    add = false;
+                }
+            }
+        }
+        if (add && operands != null) {
+            operands[element.getOperands().length - 1] = getExpression(
+                    element.getOperands()[element.getOperands().length - 1], document, true);
+            if (operands[element.getOperands().length - 1] instanceof StringLiteral) {
+                string = true;
+            }
+        }
+        if (add && operands != null && string) {
+            return new InterpolatedString(element, element.getTextRange(), Arrays.asList(operands));
+        }
+        if (element instanceof PsiBinaryExpression) {
+            Expression binaryExpression = getBinaryExpression((PsiBinaryExpression) element, document);
+            if (binaryExpression != null) {
+                return binaryExpression;
+            }
+        }
+        return null;
+    }
+
+    private static Expression getAndTwoBinaryExpressions(PsiElement parent, PsiBinaryExpression a, PsiBinaryExpression b, @Nullable Document document) {
+        if ((a.getOperationSign().getText().equals("<") || a.getOperationSign().getText().equals("<="))
+                && (b.getOperationSign().getText().equals(">") || b.getOperationSign().getText().equals(">="))
+                && a.getLOperand() != null
+                && a.getROperand() != null
+                && b.getLOperand() != null
+                && b.getROperand() != null) {
+            Expression e1 = getExpression(a.getLOperand(), document, true);
+            Expression e2 = getExpression(a.getROperand(), document, true);
+            Expression e3 = getExpression(b.getLOperand(), document, true);
+            Expression e4 = getExpression(b.getROperand(), document, true);
+            if (e1 instanceof Variable && e3 instanceof Variable
+                    && e1.equals(e3)
+                    && e2 != null && e4 != null) {
+                return new Range(parent, TextRange.create(a.getTextRange().getStartOffset(),
+                        b.getTextRange().getEndOffset()), e1,
+                        e4, b.getOperationSign().getText().equals(">="), e2, a.getOperationSign().getText().equals("<="));
+            }
+        }
+        if ((a.getOperationSign().getText().equals(">") || a.getOperationSign().getText().equals(">="))
+                && (b.getOperationSign().getText().equals("<") || b.getOperationSign().getText().equals("<="))
+                && a.getLOperand() != null
+                && a.getROperand() != null
+                && b.getLOperand() != null
+                && b.getROperand() != null) {
+            Expression e1 = getExpression(a.getLOperand(), document, true);
+            Expression e2 = getExpression(a.getROperand(), document, true);
+            Expression e3 = getExpression(b.getLOperand(), document, true);
+            Expression e4 = getExpression(b.getROperand(), document, true);
+            if (e1 instanceof Variable && e3 instanceof Variable
+                    && e1.equals(e3)
+                    && e2 != null && e4 != null) {
+                return new Range(parent, TextRange.create(a.getTextRange().getStartOffset(),
+                        b.getTextRange().getEndOffset()), e1,
+                        e2, a.getOperationSign().getText().equals(">="), e4, b.getOperationSign().getText().equals("<="));
+            }
+        }
+        return null;
+    }
+
+    private static Expression getBinaryExpression(PsiBinaryExpression element, @Nullable Document document) {
+        if (supportedBinaryOperators.contains(element.getOperationSign().getText())
+                && element.getLOperand() != null && element.getROperand() != null) {
+            Expression leftExpression = getExpression(element.getLOperand(), document, true);
+            if (leftExpression != null) {
+                Expression rightExpression = getExpression(element.getROperand(), document, true);
+                if (rightExpression != null) {
+                    switch (element.getOperationSign().getText()) {
+                        case "+":
+                            return new Add(element, element.getTextRange(), Arrays.asList(leftExpression, rightExpression));
+                        case "-":
+                            return new Subtract(element, element.getTextRange(), Arrays.asList(leftExpression, rightExpression));
+                        case "*":
+                            return new Multiply(element, element.getTextRange(), Arrays.asList(leftExpression, rightExpression));
+                        case "/":
+                            return new Divide(element, element.getTextRange(), Arrays.asList(leftExpression, rightExpression));
+                    }
+                }
+            }
+        }
+        if ("&&".equals(element.getOperationSign().getText())
+                && element.getLOperand() instanceof PsiBinaryExpression
+                && element.getROperand() instanceof PsiBinaryExpression) {
+            return getAndTwoBinaryExpressions(element,
+                    ((PsiBinaryExpression) element.getLOperand()), ((PsiBinaryExpression) element.getROperand()), document);
+        }
+/*
+        if ("!=".equals(element.getOperationSign().getText())
+                && element.getROperand() != null && element.getLOperand() != null
+                && (element.getLOperand().getType() == PsiType.NULL
+                        || element.getROperand().getType() == PsiType.NULL)) {
+            return new NotNullExpression(element.getTextRange(),
+                    getExpression(element.getLOperand().getType() == PsiType.NULL
+                            ? element.getROperand() : element.getLOperand(), document, true));
+        }
+*/
+        return null;
+    }
+}
@@ -8,8 +8,6 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class Pow extends Function implements ArithmeticExpression {
@@ -42,11 +40,10 @@ public class Pow extends Function implements ArithmeticExpression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(Pow.class.getName());
         if (getTextRange().getStartOffset() < operands.get(0).getTextRange().getStartOffset()) {
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(getTextRange().getStartOffset(),
                             operands.get(0).getTextRange().getStartOffset()), group) {
                 @Nullable
@@ -58,9 +55,9 @@ public class Pow extends Function implements ArithmeticExpression {
             });
         }
         if (operands.get(0).supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, operands.get(0).buildFoldRegions(operands.get(0).getElement(), document));
+            operands.get(0).buildFoldRegions(operands.get(0).getElement(), document, sink);
         }
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(operands.get(0).getTextRange().getEndOffset(),
                         getTextRange().getEndOffset()), group) {
             @Nullable
@@ -71,6 +68,5 @@ public class Pow extends Function implements ArithmeticExpression {
                         ? ")" + superscript(b) : superscript(b);
             }
         });
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
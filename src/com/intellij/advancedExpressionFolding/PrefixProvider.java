@@ -0,0 +1,37 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+public class PrefixProvider extends AdvancedExpressionFoldingProvider<PsiPrefixExpression> {
+    public PrefixProvider() {
+        super(PsiPrefixExpression.class, "Negations");
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiPrefixExpression element, @Nullable Document document, boolean synthetic) {
+        return getPrefixExpression(element, document);
+    }
+
+    private static Expression getPrefixExpression(PsiPrefixExpression element, @Nullable Document document) {
+        if (element.getOperand() != null) {
+            if (element.getOperationSign().getText().equals("!")) {
+                Expression operand = getExpression(element.getOperand(), document, true);
+                if (operand instanceof Equal) {
+                    return new NotEqual(element, element.getTextRange(), ((Equal) operand).getOperands());
+                }
+            } else if (element.getOperationSign().getText().equals("-")) {
+                Expression operand = getExpression(element.getOperand(), document, true);
+                if (operand != null) {
+                    return new Negate(element, element.getTextRange(), Collections.singletonList(operand));
+                }
+            }
+        }
+        return null;
+    }
+}
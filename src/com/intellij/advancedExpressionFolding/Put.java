@@ -8,9 +8,6 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
-
 public class Put extends Expression implements GetExpression {
     private final Expression object;
     private final Expression key;
@@ -34,10 +31,9 @@ public class Put extends Expression implements GetExpression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(Put.class.getName());
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                         TextRange.create(object.getTextRange().getEndOffset(),
                                 key.getTextRange().getStartOffset()), group) {
                     @Nullable
@@ -46,7 +42,7 @@ public class Put extends Expression implements GetExpression {
                         return "[";
                     }
                 });
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                         TextRange.create(key.getTextRange().getEndOffset(),
                                 value.getTextRange().getStartOffset()), group) {
                     @Nullable
@@ -56,7 +52,7 @@ public class Put extends Expression implements GetExpression {
                     }
                 });
         if (value.getTextRange().getEndOffset() < getTextRange().getEndOffset()) {
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(value.getTextRange().getEndOffset(),
                             getTextRange().getEndOffset()), group) {
                 @Nullable
@@ -67,14 +63,13 @@ public class Put extends Expression implements GetExpression {
             });
         }
         if (object.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, object.buildFoldRegions(object.getElement(), document));
+            object.buildFoldRegions(object.getElement(), document, sink);
         }
         if (key.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, key.buildFoldRegions(key.getElement(), document));
+            key.buildFoldRegions(key.getElement(), document, sink);
         }
         if (value.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, value.buildFoldRegions(value.getElement(), document));
+            value.buildFoldRegions(value.getElement(), document, sink);
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
@@ -8,7 +8,6 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -113,7 +112,7 @@ public class Range extends Expression implements RangeExpression {
         return endRange;
     }
 
-    private static Set<String> supportedOverlappedSymbols = new HashSet<String>() {
+    private static final Set<String> supportedOverlappedSymbols = Collections.unmodifiableSet(new HashSet<String>() {
         {
             add(" ");
             add("&");
@@ -121,7 +120,7 @@ public class Range extends Expression implements RangeExpression {
             add("(");
             add(")");
         }
-    };
+    });
 
     @Override
     public boolean supportsFoldRegions(Document document, boolean quick) {
@@ -135,7 +134,7 @@ public class Range extends Expression implements RangeExpression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(getClass().getName());
         StringBuilder sb1 = new StringBuilder().append(" ").append(separator).append(" ");
         if (isStartInclusive()) {
@@ -151,8 +150,7 @@ public class Range extends Expression implements RangeExpression {
             sb2.append(")");
         }
         String p2 = sb2.toString();
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(getOperand().getTextRange().getEndOffset(),
                         getStart().getTextRange().getStartOffset()),
                 group) {
@@ -162,7 +160,7 @@ public class Range extends Expression implements RangeExpression {
                 return p1;
             }
         });
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(getStart().getTextRange().getEndOffset(),
                         getEnd().getTextRange().getStartOffset()),
                 group) {
@@ -172,7 +170,7 @@ public class Range extends Expression implements RangeExpression {
                 return RANGE_COMMA_DELIMITER;
             }
         });
-        descriptors.add(getTextRange().getEndOffset() > getEnd().getTextRange().getEndOffset() ?
+        sink.add(getTextRange().getEndOffset() > getEnd().getTextRange().getEndOffset() ?
                         new FoldingDescriptor(element.getNode(),
                                 TextRange.create(getEnd().getTextRange().getEndOffset(),
                                         getTextRange().getEndOffset()),
@@ -195,11 +193,10 @@ public class Range extends Expression implements RangeExpression {
                 }
         );
         if (startRange.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, startRange.buildFoldRegions(startRange.getElement(), document));
+            startRange.buildFoldRegions(startRange.getElement(), document, sink);
         }
         if (endRange.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, endRange.buildFoldRegions(endRange.getElement(), document));
+            endRange.buildFoldRegions(endRange.getElement(), document, sink);
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
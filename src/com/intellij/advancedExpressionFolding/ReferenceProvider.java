@@ -0,0 +1,18 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class ReferenceProvider extends AdvancedExpressionFoldingProvider<PsiReferenceExpression> {
+    public ReferenceProvider() {
+        super(PsiReferenceExpression.class, "Constants and variables");
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiReferenceExpression element, @Nullable Document document, boolean synthetic) {
+        return AdvancedExpressionFoldingBuilder.getReferenceExpression(element);
+    }
+}
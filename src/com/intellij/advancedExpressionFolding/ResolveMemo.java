@@ -0,0 +1,112 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the targets of the reference expressions of a file, so the recognizers comparing the same references
+ * over and over (if and elvis qualifiers, for loop variables) resolve each of them once. The memo is dropped as soon
+ * as the file or anything outside of its code blocks changes.
+ * <p>
+ * Before the expressions of a code block are built, the method calls the providers are going to resolve are
+ * collected by their names alone and resolved in one batch, see {@link #resolveCandidates(PsiElement)}.
+ */
+class ResolveMemo {
+    private static final Key<CachedValue<Map<PsiReferenceExpression, Object>>> MEMO_KEY =
+            Key.create("AdvancedExpressionFolding.resolveMemo");
+    private static final Object UNRESOLVED = new Object();
+
+    private static final AtomicLong resolves = new AtomicLong();
+    private static final AtomicLong batchResolves = new AtomicLong();
+    private static final ThreadLocal<long[]> THREAD_RESOLVES = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Nullable
+    static PsiElement resolve(@NotNull PsiReferenceExpression reference) {
+        PsiFile file = reference.getContainingFile();
+        if (file == null) {
+            return reference.resolve();
+        }
+        Map<PsiReferenceExpression, Object> memo = CachedValuesManager.getCachedValue(file, MEMO_KEY,
+                () -> CachedValueProvider.Result.create(new ConcurrentHashMap<>(),
+                        file, PsiModificationTracker.OUT_OF_CODE_BLOCK_MODIFICATION_COUNT));
+        Object target = memo.get(reference);
+        if (target == null) {
+            PsiElement resolved = reference.resolve();
+            resolves.incrementAndGet();
+            THREAD_RESOLVES.get()[0]++;
+            memo.put(reference, resolved != null ? resolved : UNRESOLVED);
+            return resolved;
+        }
+        return target != UNRESOLVED ? (PsiElement) target : null;
+    }
+
+    /**
+     * A memoized {@link PsiReferenceExpression#isReferenceTo(PsiElement)}. References with a different name are
+     * rejected without resolving them.
+     */
+    static boolean isReferenceTo(@NotNull PsiReferenceExpression reference, @Nullable PsiElement target) {
+        if (target == null) {
+            return false;
+        }
+        if (target instanceof PsiNamedElement) {
+            String name = ((PsiNamedElement) target).getName();
+            if (name != null && !name.equals(reference.getReferenceName())) {
+                return false;
+            }
+        }
+        return reference.getManager().areElementsEquivalent(resolve(reference), target);
+    }
+
+    /**
+     * Resolves the method calls under {@code root} that the enabled providers are going to resolve.
+     * @return the number of the calls
+     */
+    static int resolveCandidates(@NotNull PsiElement root) {
+        ExpressionDispatcher dispatcher = ExpressionDispatcher.getInstance();
+        List<PsiElement> candidates = SyntaxTraverser.psiTraverser(root)
+                .filter(e -> {
+                    ProgressManager.checkCanceled();
+                    return e instanceof PsiMethodCallExpression
+                            && dispatcher.isResolveCandidate((PsiMethodCallExpression) e);
+                }).toList();
+        for (PsiElement candidate : candidates) {
+            ProgressManager.checkCanceled();
+            resolve(((PsiMethodCallExpression) candidate).getMethodExpression());
+        }
+        batchResolves.addAndGet(candidates.size());
+        return candidates.size();
+    }
+
+    /**
+     * @return the number of references actually resolved, memo hits excluded
+     */
+    static long getResolveCount() {
+        return resolves.get();
+    }
+
+    /**
+     * @return the number of references actually resolved on the current thread
+     */
+    static long getThreadResolveCount() {
+        return THREAD_RESOLVES.get()[0];
+    }
+
+    /**
+     * @return the number of method calls resolved ahead of building expressions
+     */
+    static long getBatchResolveCount() {
+        return batchResolves.get();
+    }
+}
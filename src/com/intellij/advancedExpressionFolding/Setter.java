@@ -8,9 +8,6 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
-
 public class Setter extends Expression implements GettersSetters {
     private final TextRange setterTextRange;
     private final Expression object;
@@ -36,10 +33,9 @@ public class Setter extends Expression implements GettersSetters {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(Setter.class.getName());
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                         TextRange.create(setterTextRange.getStartOffset(),
                                 value.getTextRange().getStartOffset()), group) {
                     @Nullable
@@ -49,7 +45,7 @@ public class Setter extends Expression implements GettersSetters {
                     }
                 });
         if (value.getTextRange().getEndOffset() < getTextRange().getEndOffset()) {
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(value.getTextRange().getEndOffset(),
                             getTextRange().getEndOffset()), group) {
                 @Nullable
@@ -60,11 +56,10 @@ public class Setter extends Expression implements GettersSetters {
             });
         }
         if (object != null && object.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, object.buildFoldRegions(object.getElement(), document));
+            object.buildFoldRegions(object.getElement(), document, sink);
         }
         if (value.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, value.buildFoldRegions(value.getElement(), document));
+            value.buildFoldRegions(value.getElement(), document, sink);
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
@@ -23,10 +23,9 @@ public class ShortElvisExpression extends Expression implements CheckExpression
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(ShortElvisExpression.class.getName());
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(textRange.getStartOffset(), thenExpression.getTextRange().getStartOffset()),
                 group) {
             @Override
@@ -35,7 +34,7 @@ public class ShortElvisExpression extends Expression implements CheckExpression
             }
         });
         if (thenExpression.getTextRange().getEndOffset() < textRange.getEndOffset()) {
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(thenExpression.getTextRange().getEndOffset(),
                             getTextRange().getEndOffset()),
                     group) {
@@ -45,29 +44,28 @@ public class ShortElvisExpression extends Expression implements CheckExpression
                 }
             });
         }
-        nullify(element, document, descriptors, group, elements, true);
+        nullify(element, document, sink, group, elements, true);
         if (thenExpression.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, thenExpression.buildFoldRegions(thenExpression.getElement(), document));
+            thenExpression.buildFoldRegions(thenExpression.getElement(), document, sink);
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 
-    protected static Set<String> supportedPostfixes = new HashSet<String>() {
+    protected static final Set<String> supportedPostfixes = Collections.unmodifiableSet(new HashSet<String>() {
         {
             add(".");
             add(";");
             add(",");
             add(")");
         }
-    };
+    });
 
     protected static void nullify(@NotNull PsiElement element, @NotNull Document document,
-                                  ArrayList<FoldingDescriptor> descriptors, FoldingGroup group,
+                                  FoldSink sink, FoldingGroup group,
                                   List<TextRange> elements, boolean replaceSingle) {
         for (TextRange range : elements) {
             String postfix = document.getText(TextRange.create(range.getEndOffset(), range.getEndOffset() + 1));
             if (supportedPostfixes.contains(postfix)) {
-                descriptors.add(new FoldingDescriptor(element.getNode(),
+                sink.add(new FoldingDescriptor(element.getNode(),
                         TextRange.create(range.getEndOffset(), range.getEndOffset() + 1),
                         group) {
                     @Override
@@ -77,7 +75,7 @@ public class ShortElvisExpression extends Expression implements CheckExpression
                 });
             } else if (replaceSingle) {
                 TextRange r = TextRange.create(range.getStartOffset(), range.getEndOffset());
-                descriptors.add(new FoldingDescriptor(element.getNode(),
+                sink.add(new FoldingDescriptor(element.getNode(),
                         r,
                         group) {
                     @Override
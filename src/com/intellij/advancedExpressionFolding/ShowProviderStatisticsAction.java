@@ -0,0 +1,27 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.ui.Messages;
+
+/**
+ * Shows hit/miss counters and own time of every registered {@link AdvancedExpressionFoldingProvider}.
+ */
+public class ShowProviderStatisticsAction extends AnAction implements DumbAware {
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        StringBuilder sb = new StringBuilder("<html><table><tr><th align=left>Provider</th><th>Hits</th><th>Misses</th><th>Time, ms</th></tr>");
+        for (AdvancedExpressionFoldingProvider provider : AdvancedExpressionFoldingProvider.EP_NAME.getExtensions()) {
+            sb.append("<tr><td>").append(provider.getDisplayName())
+                    .append("</td><td align=right>").append(provider.getHitCount())
+                    .append("</td><td align=right>").append(provider.getMissCount())
+                    .append("</td><td align=right>").append(provider.getTimeNanos() / 1_000_000)
+                    .append("</td></tr>");
+        }
+        sb.append("</table><p>Resolved references: ").append(ResolveMemo.getResolveCount())
+                .append(", method calls resolved in batches: ").append(ResolveMemo.getBatchResolveCount())
+                .append("</p></html>");
+        Messages.showInfoMessage(e.getProject(), sb.toString(), "Advanced Expression Folding Statistics");
+    }
+}
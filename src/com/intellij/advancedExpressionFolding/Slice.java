@@ -8,8 +8,6 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class Slice extends Function implements SlicingExpression {
@@ -38,10 +36,9 @@ public class Slice extends Function implements SlicingExpression {
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         FoldingGroup group = FoldingGroup.newGroup(Slice.class.getName());
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(operands.get(0).getTextRange().getEndOffset(),
                         operands.get(1) instanceof NumberLiteral
                                 && ((NumberLiteral) operands.get(1)).getNumber().intValue() == 0
@@ -58,7 +55,7 @@ public class Slice extends Function implements SlicingExpression {
                 && ((NumberLiteral) operands.get(1)).getNumber().intValue() < 0
                 && document.getText(TextRange.create(operands.get(1).getTextRange().getStartOffset() + 1,
                 operands.get(1).getTextRange().getStartOffset() + 2)).equals(" ")) {
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(operands.get(1).getTextRange().getStartOffset() + 1,
                             operands.get(1).getTextRange().getStartOffset() + 2), group) {
                 @Nullable
@@ -69,7 +66,7 @@ public class Slice extends Function implements SlicingExpression {
             });
         }
         if (operands.size() > 2) {
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(operands.get(1).getTextRange().getEndOffset(),
                             operands.get(2).getTextRange().getStartOffset()), group) {
                 @Nullable
@@ -82,7 +79,7 @@ public class Slice extends Function implements SlicingExpression {
                     && ((NumberLiteral) operands.get(2)).getNumber().intValue() < 0
                     && document.getText(TextRange.create(operands.get(2).getTextRange().getStartOffset() + 1,
                     operands.get(2).getTextRange().getStartOffset() + 2)).equals(" ")) {
-                descriptors.add(new FoldingDescriptor(element.getNode(),
+                sink.add(new FoldingDescriptor(element.getNode(),
                         TextRange.create(operands.get(2).getTextRange().getStartOffset() + 1,
                                 operands.get(2).getTextRange().getStartOffset() + 2), group) {
                     @Nullable
@@ -93,7 +90,7 @@ public class Slice extends Function implements SlicingExpression {
                 });
             }
         }
-        descriptors.add(new FoldingDescriptor(element.getNode(),
+        sink.add(new FoldingDescriptor(element.getNode(),
                 TextRange.create(
                         operands.size() > 2
                         ? getTextRange().getEndOffset() - 1
@@ -106,9 +103,8 @@ public class Slice extends Function implements SlicingExpression {
         });
         for (Expression operand : operands) {
             if (operand.supportsFoldRegions(document, false)) {
-                Collections.addAll(descriptors, operand.buildFoldRegions(operand.getElement(), document));
+                operand.buildFoldRegions(operand.getElement(), document, sink);
             }
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
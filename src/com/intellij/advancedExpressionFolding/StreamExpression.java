@@ -24,20 +24,18 @@ public class StreamExpression extends Expression implements StreamsExpression, H
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         int startOffset = AdvancedExpressionFoldingBuilder.findDot(document, textRange.getStartOffset(), -1);
         int endOffset = AdvancedExpressionFoldingBuilder.findDot(document, textRange.getEndOffset(), 1) + 1;
         final boolean noSpaces = endOffset == 1;
-        return new FoldingDescriptor[] {
-                new FoldingDescriptor(element.getNode(), TextRange.create(textRange.getStartOffset() + startOffset,
-                        textRange.getEndOffset() + (noSpaces ? 1 : 0)),
-                        FoldingGroup.newGroup(StreamExpression.class.getName() + (noSpaces ? "" : HighlightingExpression.GROUP_POSTFIX))) {
-                    @Nullable
-                    @Override
-                    public String getPlaceholderText() {
-                        return noSpaces ? "." : "";
-                    }
-                }
-        };
+        sink.add(new FoldingDescriptor(element.getNode(), TextRange.create(textRange.getStartOffset() + startOffset,
+                textRange.getEndOffset() + (noSpaces ? 1 : 0)),
+                FoldingGroup.newGroup(StreamExpression.class.getName() + (noSpaces ? "" : HighlightingExpression.GROUP_POSTFIX))) {
+            @Nullable
+            @Override
+            public String getPlaceholderText() {
+                return noSpaces ? "." : "";
+            }
+        });
     }
 }
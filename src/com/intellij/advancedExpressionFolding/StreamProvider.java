@@ -0,0 +1,99 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+public class StreamProvider extends AdvancedExpressionFoldingProvider<PsiMethodCallExpression> {
+    private static final Set<String> supportedMethods = Collections.unmodifiableSet(new HashSet<String>() {
+        {
+            add("collect");
+            add("stream");
+        }
+    });
+
+    public StreamProvider() {
+        super(PsiMethodCallExpression.class, "Stream expressions");
+    }
+
+    @Nullable
+    @Override
+    public Set<String> getMethodNames() {
+        return supportedMethods;
+    }
+
+    @Override
+    public boolean isResolveCandidate(@NotNull PsiMethodCallExpression call) {
+        return supportedMethods.contains(call.getMethodExpression().getReferenceName())
+                && call.getMethodExpression().getQualifierExpression() != null;
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiMethodCallExpression element, @Nullable Document document, boolean synthetic) {
+        return getStreamExpression(element, document);
+    }
+
+    @Nullable
+    private static Expression getStreamExpression(PsiMethodCallExpression element, @Nullable Document document) {
+        PsiReferenceExpression referenceExpression = element.getMethodExpression();
+        Optional<PsiElement> identifier = Stream.of(referenceExpression.getChildren())
+                .filter(c -> c instanceof PsiIdentifier).findAny();
+        if (identifier.isPresent() && supportedMethods.contains(identifier.get().getText())
+                && element.getMethodExpression().getQualifierExpression() != null) {
+            PsiMethod method = (PsiMethod) ResolveMemo.resolve(referenceExpression);
+            if (method != null) {
+                PsiClass psiClass = method.getContainingClass();
+                if (ClassFamily.of(psiClass).isSupported()) {
+                    Expression qualifierExpression = getExpression(element.getMethodExpression().getQualifierExpression(),
+                            document, true);
+                    if (qualifierExpression != null) {
+                        String methodName = identifier.get().getText();
+                        if (element.getArgumentList().getExpressions().length == 1) {
+                            PsiExpression argument = element.getArgumentList().getExpressions()[0];
+                            Expression argumentExpression = getExpression(argument, document, true);
+                            if (argumentExpression != null) {
+                                switch (methodName) {
+                                    case "collect":
+                                        if (argument instanceof PsiMethodCallExpression
+                                                && ((PsiMethodCallExpression) argument).getMethodExpression().getReferenceName().startsWith("to")
+                                                && ((PsiMethodCallExpression) argument).getMethodExpression().getQualifierExpression() instanceof PsiReferenceExpression
+                                                && ((PsiReferenceExpression) ((PsiMethodCallExpression) argument).getMethodExpression().getQualifierExpression()).getReferenceName().equals("Collectors")) {
+                                            Optional<PsiElement> i = Arrays.stream(((PsiMethodCallExpression) argument).getMethodExpression().getChildren()).filter(c -> c instanceof PsiIdentifier && c.getText().startsWith("to")).findAny();
+                                            if (i.isPresent()) {
+                                                return new Collect(element, TextRange.create(identifier.get().getTextRange().getStartOffset(),
+                                                        element.getTextRange().getEndOffset()), qualifierExpression,
+                                                        TextRange.create(i.get().getTextRange().getStartOffset(),
+                                                                argument.getTextRange().getEndOffset()));
+                                            }
+                                        }
+                                    case "stream":
+                                        if (element.getParent() instanceof PsiReferenceExpression &&
+                                                ((PsiReferenceExpression) element.getParent()).getQualifierExpression() == element) {
+                                            return new ArrayStream(element, TextRange.create(
+                                                    element.getTextRange().getStartOffset(), element.getTextRange().getEndOffset()
+                                            ), argumentExpression);
+                                        }
+                                }
+                            }
+                        } else if (element.getArgumentList().getExpressions().length == 0) {
+                            switch (methodName) {
+                                case "stream":
+                                    if (element.getParent() instanceof PsiReferenceExpression && ((PsiReferenceExpression) element.getParent()).getQualifierExpression() == element) {
+                                        return new StreamExpression(element, TextRange.create(identifier.get().getTextRange().getStartOffset(),
+                                                element.getTextRange().getEndOffset()));
+                                    }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
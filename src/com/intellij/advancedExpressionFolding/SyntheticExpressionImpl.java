@@ -1,13 +1,11 @@
 package com.intellij.advancedExpressionFolding;
 
-import com.intellij.lang.folding.FoldingDescriptor;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
-import java.util.Collections;
 
 public class SyntheticExpressionImpl extends Expression implements SyntheticExpression {
     private final String text;
@@ -47,13 +45,11 @@ public class SyntheticExpressionImpl extends Expression implements SyntheticExpr
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         for (Expression child : children) {
             if (child.supportsFoldRegions(document, false)) {
-                Collections.addAll(descriptors, child.buildFoldRegions(child.getElement(), document));
+                child.buildFoldRegions(child.getElement(), document, sink);
             }
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
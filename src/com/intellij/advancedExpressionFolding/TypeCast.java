@@ -8,9 +8,6 @@ import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
-
 public class TypeCast extends Expression implements CastExpression, HighlightingExpression {
     private final Expression object;
 
@@ -34,14 +31,13 @@ public class TypeCast extends Expression implements CastExpression, Highlighting
     }
 
     @Override
-    public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement element, @NotNull Document document) {
+    public void buildFoldRegions(@NotNull PsiElement element, @NotNull Document document, @NotNull FoldSink sink) {
         boolean dotAccess = document.getText(TextRange.create(getTextRange().getEndOffset(),
                 getTextRange().getEndOffset() + 1)).equals(".");
         FoldingGroup group = FoldingGroup.newGroup(TypeCast.class.getName() + (dotAccess ? "" : GROUP_POSTFIX));
-        ArrayList<FoldingDescriptor> descriptors = new ArrayList<>();
         if (object.getTextRange().getEndOffset() < getTextRange().getEndOffset()) {
             if (dotAccess) {
-                descriptors.add(new FoldingDescriptor(element.getNode(),
+                sink.add(new FoldingDescriptor(element.getNode(),
                         TextRange.create(getTextRange().getStartOffset(),
                                 object.getTextRange().getStartOffset()), group) {
                     @Nullable
@@ -50,7 +46,7 @@ public class TypeCast extends Expression implements CastExpression, Highlighting
                         return "";
                     }
                 });
-                descriptors.add(new FoldingDescriptor(element.getNode(),
+                sink.add(new FoldingDescriptor(element.getNode(),
                                         TextRange.create(object.getTextRange().getEndOffset(),
                                                 getTextRange().getEndOffset() + 1), group) {
                                     @Nullable
@@ -61,7 +57,7 @@ public class TypeCast extends Expression implements CastExpression, Highlighting
                                 }
                 );
             } else {
-                descriptors.add(new FoldingDescriptor(element.getNode(),
+                sink.add(new FoldingDescriptor(element.getNode(),
                                         TextRange.create(getTextRange().getStartOffset(),
                                                 object.getTextRange().getStartOffset()), group) {
                                     @Nullable
@@ -71,7 +67,7 @@ public class TypeCast extends Expression implements CastExpression, Highlighting
                                     }
                                 }
                 );
-                descriptors.add(new FoldingDescriptor(element.getNode(),
+                sink.add(new FoldingDescriptor(element.getNode(),
                         TextRange.create(object.getTextRange().getEndOffset(),
                                 getTextRange().getEndOffset()), group) {
                     @Nullable
@@ -82,7 +78,7 @@ public class TypeCast extends Expression implements CastExpression, Highlighting
                 });
             }
         } else {
-            descriptors.add(new FoldingDescriptor(element.getNode(),
+            sink.add(new FoldingDescriptor(element.getNode(),
                     TextRange.create(getTextRange().getStartOffset(),
                             object.getTextRange().getStartOffset()), group) {
                 @Nullable
@@ -93,8 +89,7 @@ public class TypeCast extends Expression implements CastExpression, Highlighting
             });
         }
         if (object.supportsFoldRegions(document, false)) {
-            Collections.addAll(descriptors, object.buildFoldRegions(object.getElement(), document));
+            object.buildFoldRegions(object.getElement(), document, sink);
         }
-        return descriptors.toArray(FoldingDescriptor.EMPTY);
     }
 }
@@ -0,0 +1,19 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class TypeCastProvider extends AdvancedExpressionFoldingProvider<PsiTypeCastExpression> implements DumbAware {
+    public TypeCastProvider() {
+        super(PsiTypeCastExpression.class, "Type casts");
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiTypeCastExpression element, @Nullable Document document, boolean synthetic) {
+        return AdvancedExpressionFoldingBuilder.getTypeCastExpression(element, document);
+    }
+}
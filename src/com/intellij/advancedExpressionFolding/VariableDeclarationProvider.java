@@ -0,0 +1,36 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class VariableDeclarationProvider extends AdvancedExpressionFoldingProvider<PsiVariable> implements DumbAware {
+    public VariableDeclarationProvider() {
+        super(PsiVariable.class, "Variable declarations");
+    }
+
+    @Nullable
+    @Override
+    protected Expression calculateExpression(@NotNull PsiVariable element, @Nullable Document document, boolean synthetic) {
+        if (element.getParent() instanceof PsiDeclarationStatement || element.getParent() instanceof PsiForeachStatement) {
+            return getVariableDeclaration(element, document);
+        }
+        return null;
+    }
+
+    private static VariableDeclarationImpl getVariableDeclaration(PsiVariable element, Document document) {
+        if (element.getName() != null && element.getTypeElement() != null
+                && (element.getInitializer() != null || element.getParent() instanceof PsiForeachStatement)
+                && element.getTextRange().getStartOffset() < element.getTypeElement().getTextRange().getEndOffset()) {
+            boolean isFinal = AdvancedExpressionFoldingBuilder.calculateIfFinal(element);
+            return new VariableDeclarationImpl(element, TextRange.create(
+                    element.getTextRange().getStartOffset(),
+                    element.getTypeElement().getTextRange().getEndOffset()),
+                    element.getModifierList() != null && isFinal);
+        }
+        return null;
+    }
+}
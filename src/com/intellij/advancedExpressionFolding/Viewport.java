@@ -0,0 +1,70 @@
+package com.intellij.advancedExpressionFolding;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.TextRange;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remembers the text visible in every editor, so the fold regions of very large files can be computed for the parts
+ * shown in the editors of the document first. Should the budget of the file run out, the visible parts still get all
+ * providers and only the rest is folded syntactically.
+ */
+class Viewport {
+    private static final Key<TextRange> VISIBLE_RANGE_KEY = Key.create("AdvancedExpressionFolding.visibleRange");
+    private static final int MIN_LINES = 10000;
+    private static final int MARGIN_LINES = 200;
+
+    /**
+     * Must be called on the event dispatch thread whenever the visible area of the editor changes.
+     */
+    static void update(@NotNull Editor editor) {
+        Rectangle area = editor.getScrollingModel().getVisibleArea();
+        if (area.isEmpty()) {
+            return;
+        }
+        int start = editor.logicalPositionToOffset(editor.xyToLogicalPosition(area.getLocation()));
+        int end = editor.logicalPositionToOffset(editor.xyToLogicalPosition(
+                new Point(area.x + area.width, area.y + area.height)));
+        editor.putUserData(VISIBLE_RANGE_KEY, TextRange.create(start, Math.max(start, end)));
+    }
+
+    /**
+     * @return the last visible ranges of all editors of a large document, each widened by a margin, or null if the
+     * document is small or has not been shown yet
+     */
+    @Nullable
+    static List<TextRange> getFocus(@NotNull Document document) {
+        if (document.getLineCount() < MIN_LINES) {
+            return null;
+        }
+        List<TextRange> focus = new ArrayList<>();
+        int length = document.getTextLength();
+        for (Editor editor : EditorFactory.getInstance().getEditors(document)) {
+            TextRange visible = editor.getUserData(VISIBLE_RANGE_KEY);
+            if (visible != null) {
+                int startLine = document.getLineNumber(Math.min(visible.getStartOffset(), length));
+                int endLine = document.getLineNumber(Math.min(visible.getEndOffset(), length));
+                focus.add(TextRange.create(document.getLineStartOffset(Math.max(0, startLine - MARGIN_LINES)),
+                        document.getLineEndOffset(Math.min(document.getLineCount() - 1, endLine + MARGIN_LINES))));
+            }
+        }
+        return focus.isEmpty() ? null : focus;
+    }
+
+    static boolean intersects(@NotNull List<TextRange> focus, @NotNull TextRange range) {
+        for (TextRange visible : focus) {
+            if (visible.intersects(range)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,6 +1,27 @@
 package com.intellij.advancedExpressionFolding;
 
+import com.intellij.lang.folding.FoldingDescriptor;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.FoldRegion;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.impl.EditorImpl;
+import com.intellij.openapi.editor.markup.HighlighterLayer;
+import com.intellij.openapi.editor.markup.HighlighterTargetArea;
+import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import com.intellij.util.ReflectionUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class FoldingTest extends LightCodeInsightFixtureTestCase {
     @Override
@@ -43,4 +64,129 @@ public class FoldingTest extends LightCodeInsightFixtureTestCase {
     public void testFor() throws Exception {
         doTest();
     }
+
+    public void testCollapsedByDefaultReusesExpressions() throws Exception {
+        myFixture.configureByText("Collapsed.java", "import java.math.BigDecimal;\n" +
+                "\n" +
+                "public class Collapsed {\n" +
+                "    public static void main(String[] args) {\n" +
+                "        BigDecimal a = new BigDecimal(1);\n" +
+                "        System.out.println(a.abs().intValue());\n" +
+                "    }\n" +
+                "}");
+        AdvancedExpressionFoldingBuilder builder = new AdvancedExpressionFoldingBuilder();
+        FoldingDescriptor[] descriptors = builder.buildFoldRegions(myFixture.getFile(),
+                myFixture.getEditor().getDocument(), false);
+        assertTrue(descriptors.length > 0);
+        long calculations = getCalculationCount();
+        for (FoldingDescriptor descriptor : descriptors) {
+            builder.isCollapsedByDefault(descriptor.getElement());
+        }
+        assertEquals(calculations, getCalculationCount());
+    }
+
+    public void testCanceledFolding() throws Exception {
+        StringBuilder text = new StringBuilder("import java.math.BigDecimal;\n\npublic class Canceled {\n");
+        for (int i = 0; i < 1000; i++) {
+            text.append("    public void m").append(i).append("(BigDecimal a) {\n")
+                    .append("        System.out.println(a.abs().intValue());\n")
+                    .append("    }\n");
+        }
+        myFixture.configureByText("Canceled.java", text.append("}").toString());
+        ProgressIndicatorBase indicator = new ProgressIndicatorBase();
+        indicator.start();
+        indicator.cancel();
+        try {
+            ProgressManager.getInstance().runProcess(() -> new AdvancedExpressionFoldingBuilder()
+                    .buildFoldRegions(myFixture.getFile(), myFixture.getEditor().getDocument(), false), indicator);
+            fail("Folding must stop once the indicator is canceled");
+        } catch (ProcessCanceledException e) {
+            // expected
+        }
+    }
+
+    public void testSettingsChangeIsTracked() throws Exception {
+        AdvancedExpressionFoldingSettings settings = AdvancedExpressionFoldingSettings.getInstance();
+        boolean collapse = settings.isGetExpressionsCollapse();
+        long count = settings.getModificationCount();
+        try {
+            settings.setGetExpressionsCollapse(!collapse);
+            assertTrue(settings.getModificationCount() > count);
+        } finally {
+            settings.setGetExpressionsCollapse(collapse);
+        }
+    }
+
+    public void testFoldingBudgetFallsBackToSyntacticFolding() throws Exception {
+        StringBuilder text = new StringBuilder("public class Budget {\n");
+        for (int i = 0; i < 200; i++) {
+            text.append("    public void m").append(i).append("() {\n")
+                    .append("        String s").append(i).append(" = \"").append(i).append("\";\n")
+                    .append("    }\n");
+        }
+        myFixture.configureByText("Budget.java", text.append("}").toString());
+        Document document = myFixture.getEditor().getDocument();
+        FoldingBudget budget = new FoldingBudget(100, Long.MAX_VALUE, Integer.MAX_VALUE);
+        List<FoldingDescriptor> descriptors = new ArrayList<>();
+        assertFalse(AdvancedExpressionFoldingBuilder.computeFoldRegions(myFixture.getFile(), document, false, budget,
+                true, true, descriptors::add));
+        assertFalse(budget.isComplete());
+        // The declarations past the node limit are folded by the syntactic providers
+        assertEquals(200, descriptors.size());
+        int last = document.getText().lastIndexOf("String s199");
+        FoldingDescriptor lastDescriptor = descriptors.get(descriptors.size() - 1);
+        assertEquals(last, lastDescriptor.getRange().getStartOffset());
+        assertEquals("val", lastDescriptor.getPlaceholderText());
+    }
+
+    public void testEraseGenerics() throws Exception {
+        assertEquals("java.util.Map", AdvancedExpressionFoldingBuilder.eraseGenerics("java.util.Map<java.lang.String,java.util.List<java.util.Map<K,V>>>"));
+        assertEquals("java.util.List", AdvancedExpressionFoldingBuilder.eraseGenerics("java.util.List<T>"));
+        assertEquals("java.lang.String", AdvancedExpressionFoldingBuilder.eraseGenerics("java.lang.String"));
+        assertEquals("a<bd", AdvancedExpressionFoldingBuilder.eraseGenerics("a<b<c>d"));
+        assertEquals("a>b", AdvancedExpressionFoldingBuilder.eraseGenerics("a>b<c>"));
+    }
+
+    public void testHighlightedRegionsAreReleased() throws Exception {
+        Document document = EditorFactory.getInstance().createDocument("class Released {}");
+        for (int i = 0; i < 200; i++) {
+            EditorEx editor = (EditorEx) EditorFactory.getInstance().createEditor(document, getProject());
+            Disposable fileEditor = Disposer.newDisposable();
+            try {
+                int listeners = getMouseListenerCount(editor);
+                HighlightedRegions regions = HighlightedRegions.install(editor, fileEditor);
+                assertSame(regions, HighlightedRegions.get(editor));
+                assertEquals(listeners + 2, getMouseListenerCount(editor));
+
+                FoldRegion[] region = new FoldRegion[1];
+                editor.getFoldingModel().runBatchFoldingOperation(() ->
+                        region[0] = editor.getFoldingModel().addFoldRegion(0, 5, "..."));
+                RangeHighlighter highlighter = editor.getMarkupModel().addRangeHighlighter(0, 5,
+                        HighlighterLayer.SELECTION, null, HighlighterTargetArea.EXACT_RANGE);
+                regions.update(Collections.singletonMap(region[0], highlighter), Collections.emptyList());
+                assertEquals(1, editor.getMarkupModel().getAllHighlighters().length);
+
+                Disposer.dispose(fileEditor);
+                assertNull(HighlightedRegions.get(editor));
+                assertEquals(0, editor.getMarkupModel().getAllHighlighters().length);
+                assertEquals(listeners, getMouseListenerCount(editor));
+            } finally {
+                EditorFactory.getInstance().releaseEditor(editor);
+            }
+        }
+    }
+
+    private static int getMouseListenerCount(@NotNull Editor editor) {
+        List<?> mouseListeners = ReflectionUtil.getField(EditorImpl.class, editor, List.class, "myMouseListeners");
+        List<?> motionListeners = ReflectionUtil.getField(EditorImpl.class, editor, List.class, "myMouseMotionListeners");
+        return mouseListeners.size() + motionListeners.size();
+    }
+
+    private static long getCalculationCount() {
+        long count = 0;
+        for (AdvancedExpressionFoldingProvider provider : AdvancedExpressionFoldingProvider.EP_NAME.getExtensions()) {
+            count += provider.getHitCount() + provider.getMissCount();
+        }
+        return count;
+    }
 }